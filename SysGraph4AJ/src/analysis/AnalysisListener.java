@@ -0,0 +1,20 @@
+package analysis;
+
+import model.SysElement;
+
+/**
+ * Told about every element an analysis adds to the model, so the results can be shown while the analysis
+ * goes on. It is called on the thread that runs the analysis. The elements are added to the model in batches,
+ * so an element may only be in the model a little after it is told about.
+ */
+public interface AnalysisListener {
+
+	/**
+	 * @param element the element just found
+	 * @param done how many elements of this analysis were added so far
+	 * @param total how many elements this analysis will add
+	 * @return false to stop the analysis
+	 */
+	public boolean analysed(SysElement element, int done, int total);
+
+}
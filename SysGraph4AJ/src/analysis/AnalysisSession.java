@@ -0,0 +1,314 @@
+package analysis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.SysAdvice;
+import model.SysClass;
+import model.SysElement;
+import model.SysMethod;
+import model.SysPackage;
+import model.SysRoot;
+
+import org.apache.bcel.Repository;
+
+import cfg.model.CFGNode;
+import cfg.processing.CFGBuilder;
+
+/**
+ * An analysed project, for tools that embed the analyser instead of using the GUI.
+ * <br>
+ * A session is opened on a classpath, analysed (all of it or a scope at a time), queried and closed.
+ * Queries can be made from any number of threads at once: every analysis publishes an immutable index of
+ * the model, and queries only read the last published index, so they never see a half analysed model and
+ * never wait for an analysis to finish. Control flow graphs are built on demand and cached.
+ * <br>
+ * The static analysers share the class loader of {@link FileLoader} and the BCEL repository, so the
+ * analyses of all sessions of a JVM are serialized and every session restores its own class loader before
+ * analysing. The elements returned by the queries belong to the model and must not be changed.
+ */
+public class AnalysisSession implements Closeable {
+
+	/**guards FileLoader and the BCEL repository, which are global*/
+	private static final Object SHARED = new Object();
+	/**the session whose class loader and classes are in FileLoader and in the BCEL repository*/
+	private static AnalysisSession current = null;
+
+	private final SysRoot root;
+	private ClassLoader loader;
+	private volatile Index index;
+	private volatile boolean closed = false;
+	private final Map<SysMethod, CFGNode> cfgs = new ConcurrentHashMap<SysMethod, CFGNode>();
+
+	private AnalysisSession(SysRoot root, ClassLoader loader) {
+		this.root = root;
+		this.loader = loader;
+		this.index = new Index(root);
+	}
+
+	/**
+	 * Opens a project. Only its top level packages are known until {@link #analyse(String)} is called.
+	 * @param classpath the bin directory of the project, optionally followed by the jars and directories it
+	 * depends on, separated by {@link File#pathSeparator}
+	 */
+	public static AnalysisSession open(String classpath) throws IOException {
+		String[] entries = classpath.split(File.pathSeparator);
+		File[] libraries = new File[entries.length - 1];
+		for(int i = 1; i < entries.length; i++) {
+			libraries[i - 1] = new File(entries[i]);
+		}
+		synchronized(SHARED) {
+			FileLoader.setLibraries(libraries);
+			Repository.clearCache();
+			SysRoot root = SysAnalysis.initialModel(entries[0]);
+			if(root == null) {
+				throw new IOException("Can't read \"" + entries[0] + "\"");
+			}
+			current = new AnalysisSession(root, FileLoader.getClassLoader());
+			return current;
+		}
+	}
+
+	/**
+	 * Analyses the packages, classes and methods inside the given scope.
+	 * @param scope the fully qualified name of a package, class or method, null or "" for the whole project
+	 * @return the number of elements analysed by this call
+	 */
+	public int analyse(String scope) {
+		if(scope == null) scope = "";
+		synchronized(SHARED) {
+			checkOpen();
+			useSharedState();
+			int analysed = 0;
+
+			List<SysPackage> pending = new ArrayList<SysPackage>(root.getPackages());
+			while(!pending.isEmpty()) {
+				SysPackage p = pending.remove(pending.size() - 1);
+				String name = p.getFullyQualifiedName();
+				if(!inScope(name, scope) && !scope.startsWith(name + ".")) continue;
+				if(!p.isAnalysed()) {
+					SysAnalysis.analysePackage(p, ProjectAnalysis.getPath(root, p), true);
+					analysed++;
+				}
+				pending.addAll(p.getPackages());
+			}
+
+			List<SysClass> classes = new ArrayList<SysClass>();
+			for(SysPackage p : ProjectAnalysis.getAllPackages(root)) {
+				classes.addAll(p.getClasses());
+				classes.addAll(p.getAspects());
+			}
+			while(!classes.isEmpty()) {
+				SysClass c = classes.remove(classes.size() - 1);
+				String name = c.getFullyQualifiedName();
+				if(!inScope(name, scope) && !scope.startsWith(name + ".")) continue;
+				if(!c.isAnalysed()) {
+					ClassAnalysis2.analyseClass(c, root);
+					c.setIsAnalysed(true);
+					analysed++;
+				}
+				classes.addAll(c.getInnerClasses());
+			}
+
+			for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+				if(m.isAnalysed() || m.getMethod() == null || !inScope(m.getFullyQualifiedName(), scope)) continue;
+				try {
+					MethodAnalysis.analyseMethod(m, root);
+					m.setIsAnalysed(true);
+					analysed++;
+				} catch(RuntimeException e) {
+					System.err.println("[AnalysisSession]: could not analyse \"" + m.getFullyQualifiedName() + "\": " + e);
+				}
+			}
+			index = new Index(root);
+			return analysed;
+		}
+	}
+
+	/**the analysis of the given scope, e.g. the fully qualified name of a class, includes the given element*/
+	private static boolean inScope(String name, String scope) {
+		return scope.isEmpty() || name.equals(scope) || name.startsWith(scope + ".");
+	}
+
+	/**puts the class loader of this session in FileLoader and drops the classes of other sessions from BCEL*/
+	private void useSharedState() {
+		if(current != this) {
+			Repository.clearCache();
+			FileLoader.setClassLoader(loader);
+			current = this;
+		}
+	}
+
+	private void checkOpen() {
+		if(closed) throw new IllegalStateException("session of \"" + root.getPath() + "\" is closed");
+	}
+
+	/**@return the bin directory of the project*/
+	public String getPath() {
+		return root.getPath();
+	}
+
+	/**@return the package or class with the given fully qualified name, or the method with the given id
+	 * (see {@link #idOf(SysMethod)}), null if it is not in the analysed model*/
+	public SysElement find(String name) {
+		checkOpen();
+		return index.elements.get(name);
+	}
+
+	/**@return every method with the given fully qualified name, i.e. all its overloads*/
+	public List<SysMethod> findMethods(String fullyQualifiedName) {
+		checkOpen();
+		return list(index.overloads.get(fullyQualifiedName));
+	}
+
+	public List<SysPackage> getPackages() {
+		checkOpen();
+		return index.packages;
+	}
+
+	/**@return every class and aspect found so far, inner classes included*/
+	public List<SysClass> getClasses() {
+		checkOpen();
+		return index.classes;
+	}
+
+	/**@return every method and piece of advice found so far*/
+	public List<SysMethod> getMethods() {
+		checkOpen();
+		return index.methods;
+	}
+
+	/**@return the methods called by the given one*/
+	public List<SysMethod> getCallees(SysMethod m) {
+		checkOpen();
+		return list(index.callees.get(m));
+	}
+
+	/**@return the analysed methods that call the given one*/
+	public List<SysMethod> getCallers(SysMethod m) {
+		checkOpen();
+		return list(index.callers.get(m));
+	}
+
+	/**@return the pieces of advice that affect the given method*/
+	public List<SysAdvice> getAdvice(SysMethod m) {
+		checkOpen();
+		return list(index.advice.get(m));
+	}
+
+	/**
+	 * @return the control flow graph of the given method, built on the first call and cached
+	 * @throws IllegalArgumentException when the method has no bytecode, e.g. constructors
+	 */
+	public CFGNode getCfg(SysMethod m) {
+		checkOpen();
+		CFGNode cfg = cfgs.get(m);
+		if(cfg != null) return cfg;
+		if(m.getMethod() == null) {
+			throw new IllegalArgumentException("\"" + m.getFullyQualifiedName() + "\" has no bytecode");
+		}
+		synchronized(SHARED) {
+			checkOpen();
+			cfg = cfgs.get(m);
+			if(cfg == null) {
+				useSharedState();
+				cfg = new CFGBuilder().build(m.getMethod());
+				cfgs.put(m, cfg);
+			}
+			return cfg;
+		}
+	}
+
+	/**@return the id of a method in a session: its fully qualified name and its signature*/
+	public static String idOf(SysMethod m) {
+		return m.getFullyQualifiedName() + " " + m.getSignature();
+	}
+
+	/**Releases the model, the CFGs and the class loader of this session. Queries fail after this call.*/
+	public void close() throws IOException {
+		synchronized(SHARED) {
+			if(closed) return;
+			closed = true;
+			index = new Index(new SysRoot(root.getPath()));
+			cfgs.clear();
+			if(current == this) {
+				Repository.clearCache();
+				FileLoader.setClassLoader(null);
+				current = null;
+			}
+			if(loader instanceof URLClassLoader) {
+				((URLClassLoader)loader).close();
+			}
+			loader = null;
+		}
+	}
+
+	private static <T> List<T> list(List<T> l) {
+		return l == null ? Collections.<T>emptyList() : l;
+	}
+
+	/**@return the methods in their order, a method called from several places once*/
+	private static List<SysMethod> distinct(List<SysMethod> calls) {
+		Set<SysMethod> seen = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
+		List<SysMethod> distinct = new ArrayList<SysMethod>(calls.size());
+		for(SysMethod m : calls) {
+			if(seen.add(m)) distinct.add(m);
+		}
+		return distinct;
+	}
+
+	/**An immutable copy of the relations of the model, rebuilt after every analysis*/
+	private static class Index {
+		final List<SysPackage> packages;
+		final List<SysClass> classes;
+		final List<SysMethod> methods;
+		final Map<String, SysElement> elements = new HashMap<String, SysElement>();
+		final Map<String, List<SysMethod>> overloads = new HashMap<String, List<SysMethod>>();
+		//constructors have no java.lang.reflect.Method, so they are equal to each other for SysMethod.equals
+		final Map<SysMethod, List<SysMethod>> callees = new IdentityHashMap<SysMethod, List<SysMethod>>();
+		final Map<SysMethod, List<SysMethod>> callers = new IdentityHashMap<SysMethod, List<SysMethod>>();
+		final Map<SysMethod, List<SysAdvice>> advice = new IdentityHashMap<SysMethod, List<SysAdvice>>();
+
+		Index(SysRoot root) {
+			packages = Collections.unmodifiableList(ProjectAnalysis.getAllPackages(root));
+			classes = Collections.unmodifiableList(ProjectAnalysis.getAllClasses(root));
+			methods = Collections.unmodifiableList(ProjectAnalysis.getAllMethods(root));
+			for(SysPackage p : packages) {
+				elements.put(p.getFullyQualifiedName(), p);
+			}
+			for(SysClass c : classes) {
+				elements.put(c.getFullyQualifiedName(), c);
+			}
+			for(SysMethod m : methods) {
+				elements.put(idOf(m), m);
+				List<SysMethod> same = overloads.get(m.getFullyQualifiedName());
+				if(same == null) {
+					same = new ArrayList<SysMethod>(1);
+					overloads.put(m.getFullyQualifiedName(), same);
+				}
+				same.add(m);
+				callees.put(m, Collections.unmodifiableList(distinct(m.getCalls())));
+				if(!m.getAffecters().isEmpty()) {
+					advice.put(m, Collections.unmodifiableList(new ArrayList<SysAdvice>(m.getAffecters())));
+				}
+			}
+			for(Map.Entry<SysMethod, List<SysMethod>> e : ProjectAnalysis.getCallers(methods).entrySet()) {
+				callers.put(e.getKey(), Collections.unmodifiableList(e.getValue()));
+			}
+			for(Map.Entry<String, List<SysMethod>> e : overloads.entrySet()) {
+				e.setValue(Collections.unmodifiableList(e.getValue()));
+			}
+		}
+	}
+
+}
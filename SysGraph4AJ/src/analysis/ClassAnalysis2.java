@@ -6,6 +6,8 @@ package analysis;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
 
 import model.SysElement;
 import model.SysAdvice;
@@ -77,6 +79,9 @@ public class ClassAnalysis2 {
 		}
 		
 		if(clazz != null){
+			//members are collected first and published together, so a class being painted is never half analysed
+			List<SysMethod> methods = new ArrayList<SysMethod>();
+			List<SysField> fields = new ArrayList<SysField>();
 			java.lang.reflect.Method[] vet_met = clazz.getDeclaredMethods(); //get declared methods
 			int size = vet_met.length;
 			for(int i =0; i < size; i++){
@@ -104,7 +109,7 @@ public class ClassAnalysis2 {
 								((SysAspect)c).add((SysAdvice)m);//cast to add in the right field of SysAspect
 							}
 						} else{
-							c.add(m); //not an advice, add regular method
+							methods.add(m); //not an advice, add regular method
 						}
 					}
 				} else {
@@ -122,15 +127,17 @@ public class ClassAnalysis2 {
 							m.addParameter(param[j].getCanonicalName()); //create the signature
 						}
 					}
-					c.add(m);
+					methods.add(m);
 				}
 			}
+			c.addMethods(methods);
 			
 			java.lang.reflect.Field[] f = clazz.getDeclaredFields(); //just the declared fields.
 			for(int i = 0; i < f.length; i++){
 				if(!f[i].getName().contains("$jacoco"))
-					c.add(new SysField(f[i]));
+					fields.add(new SysField(f[i]));
 			}
+			c.addFields(fields);
 
 			Class<?>[] innerClasses = clazz.getDeclaredClasses();
 			c.addInnerClass(innerClasses); //add inner classes
@@ -25,6 +25,15 @@ public class FileLoader {
 	}
 
 	private static ClassLoader loader = null;
+	private static File[] libraries = new File[0];
+
+	/**
+	 * Sets the extra class path entries (jars or directories) the analysed project depends on.
+	 * They are added to every class loader created by {@link #setNewClassPath(File)}.
+	 */
+	public static synchronized void setLibraries(File[] libs) {
+		libraries = libs == null ? new File[0] : libs.clone();
+	}
 
 	public static synchronized ClassLoader getClassLoader() {
 		if (loader == null) {
@@ -33,6 +42,14 @@ public class FileLoader {
 		return loader;
 	}
 
+	/**
+	 * Replaces the current class loader, e.g. by one previously returned by {@link #getClassLoader()}.
+	 * Used to switch between projects analysed in the same JVM.
+	 */
+	public static synchronized void setClassLoader(ClassLoader cl) {
+		loader = cl;
+	}
+
 	public static synchronized void setNewClassPath(File f) {
 		if (f != null) {
 			if (!f.isDirectory()) {
@@ -40,7 +57,11 @@ public class FileLoader {
 			}
 			URL[] allLocations = new URL[0];
 			try {
-				allLocations = new URL[] { f.toURI().toURL() };
+				allLocations = new URL[libraries.length + 1];
+				allLocations[0] = f.toURI().toURL();
+				for (int i = 0; i < libraries.length; i++) {
+					allLocations[i + 1] = libraries[i].toURI().toURL();
+				}
 				loader = new MemoryURLClassLoader(allLocations, ClassLoader.getSystemClassLoader());
 				if (loader == null) {
 					throw new Exception("ClassLoader is null");
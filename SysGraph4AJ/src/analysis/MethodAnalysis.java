@@ -35,53 +35,62 @@ public class MethodAnalysis {
 		List<String> methodCalls = getMethodCallsFromMethodArray(sm, jc.getMethods()); /* find SysMethod in BCEL.JavaClass */
 
 		System.out.println("[MethodAnalysis]: methodCalls: " + methodCalls);
-		//for each call this method does, we need to find its called method
-		for(String called : methodCalls){
-			called = removeLineNumber(called);
-			called = removeInvokeCommand(called);
-			String sig = getSignature(called);
-			System.out.println("[MethodAnalysis]: Looking for \"" + called + "\"");
-			//assert(called.split(" ").length>=2);
-			if(called.split(" ").length < 2) throw new RuntimeException("[MethodAnalysis] called's requirements dont match(missing return type)\n\t" + called);
-			//assert(called.contains("."));
-			if(!called.contains(".")) return;//BCEL error method call to { invoke* " (number) }
-			if(called == null || called.equals("") || called.equals(" ")) continue;
-			//now we have the called method fully qualified name and its signature.
-			//a couple of good references to work with
-			SysElement lastInModel = root.getMax(called, sig);
-			System.out.println("[MethodAnalysis]: max: \"" + lastInModel + "\"");
-			SysElement nextNotInModel = null;
-			SysMethod calledMethod = null;
-
-
-			if(lastInModel != null && lastInModel instanceof SysMethod){
-				calledMethod = (SysMethod)lastInModel;
-			}
+		//the calls found are added at once at the end: the list of calls is copied for every change
+		List<SysMethod> calls = new ArrayList<SysMethod>();
+		try {
+			//for each call this method does, we need to find its called method
+			for(String called : methodCalls){
+				called = removeLineNumber(called);
+				called = removeInvokeCommand(called);
+				String sig = getSignature(called);
+				System.out.println("[MethodAnalysis]: Looking for \"" + called + "\"");
+				//assert(called.split(" ").length>=2);
+				if(called.split(" ").length < 2) throw new RuntimeException("[MethodAnalysis] called's requirements dont match(missing return type)\n\t" + called);
+				//assert(called.contains("."));
+				if(!called.contains(".")) return;//BCEL error method call to { invoke* " (number) }
+				if(called == null || called.equals("") || called.equals(" ")) continue;
+				//now we have the called method fully qualified name and its signature.
+				//a couple of good references to work with
+				SysElement lastInModel = root.getMax(called, sig);
+				System.out.println("[MethodAnalysis]: max: \"" + lastInModel + "\"");
+				SysElement nextNotInModel = null;
+				SysMethod calledMethod = null;
+
+
+				if(lastInModel != null && lastInModel instanceof SysMethod){
+					calledMethod = (SysMethod)lastInModel;
+				}
 
 
-			if(lastInModel != null && !(lastInModel instanceof SysMethod)){
-				try{
-					nextNotInModel = tryOption(lastInModel, getFixedString(called,lastInModel), sig.toString(), root);
-					//remembering that tryOption never returns null, In such case as it doesnt find the required method it 
-					//throws a PathNotFoundException
-					if(!addElementToElement_notDependency(lastInModel,nextNotInModel)){
-						System.err.println("[MethodAnalysis]: error when trying to add "+nextNotInModel.getName() +" to "+ lastInModel);
-					}
+				if(lastInModel != null && !(lastInModel instanceof SysMethod)){
+					try{
+						nextNotInModel = tryOption(lastInModel, getFixedString(called,lastInModel), sig.toString(), root);
+						//remembering that tryOption never returns null, In such case as it doesnt find the required method it 
+						//throws a PathNotFoundException
+						if(!addElementToElement_notDependency(lastInModel,nextNotInModel)){
+							System.err.println("[MethodAnalysis]: error when trying to add "+nextNotInModel.getName() +" to "+ lastInModel);
+						}
 
-					calledMethod = root.getMethodFromString(called, sig);
-					System.out.println("[MethodAnalysis]: next: \"" + nextNotInModel + "\"");
-					System.out.println("[MethodAnalysis]: called: \"" + calledMethod + "\"");
+						calledMethod = root.getMethodFromString(called, sig);
+						System.out.println("[MethodAnalysis]: next: \"" + nextNotInModel + "\"");
+						System.out.println("[MethodAnalysis]: called: \"" + calledMethod + "\"");
 
-				} catch(PathNotFoundException pnfe){
-					System.out.println("[MethodAnalysis]: path :"+called+" not found.");
+					} catch(PathNotFoundException pnfe){
+						System.out.println("[MethodAnalysis]: path :"+called+" not found.");
+					}
+				}
+				if(calledMethod != null && isCall(sm, calledMethod)) {
+					calls.add(calledMethod);
+				} else if(calledMethod != null) {
+					addDependency(sm,calledMethod);
+				} else {
+					//bad... 
+					System.out.println("[MethodAnalysis]: couldnt find \""+called+"\"");
 				}
 			}
-			if(calledMethod != null) {
-				addDependency(sm,calledMethod);
-			} else {
-				//bad... 
-				System.out.println("[MethodAnalysis]: couldnt find \""+called+"\"");
-			}
+		} finally {
+			System.out.println("[MethodAnalysis]: adding " + calls + " to " + sm);
+			sm.addDependencies(calls);
 		}
 		sm.setIsAnalysed(true);
 	}
@@ -611,8 +620,13 @@ public class MethodAnalysis {
 		return null;
 	}
 
+	/**@return true if the dependency is a call of caller, false if it is an advice that affects caller*/
+	private static boolean isCall(SysMethod caller, SysMethod called) {
+		return caller instanceof SysAdvice || !(called instanceof SysAdvice);
+	}
+
 	public static boolean addDependency(SysMethod caller, SysMethod called){
-		if(caller instanceof SysAdvice || (caller instanceof SysMethod && !(called instanceof SysAdvice))){
+		if(isCall(caller, called)){
 			System.out.println("[MethodAnalysis]: adding "+called+" to " + caller);
 			caller.addDependency(called);
 			System.out.println("[MethodAnalysis]: added?(true|false) "+caller.dependsOn(called));
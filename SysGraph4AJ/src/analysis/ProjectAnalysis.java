@@ -0,0 +1,152 @@
+package analysis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.SysAdvice;
+import model.SysAspect;
+import model.SysClass;
+import model.SysMethod;
+import model.SysPackage;
+import model.SysRoot;
+
+/**
+ * Analyses a whole project at once, i.e., every package, every class and every method found in the bin
+ * directory of a {@link SysRoot}. The GUI analyses one element per double click, this class is meant for
+ * batch runs and benchmarks.
+ */
+public class ProjectAnalysis {
+
+	/**
+	 * Analyses every package of the given root, descending into the packages found on the way.
+	 * @return the number of packages analysed by this call
+	 */
+	public static int analyseAllPackages(SysRoot root) {
+		int analysed = 0;
+		List<SysPackage> pending = new ArrayList<SysPackage>(root.getPackages());
+		while(!pending.isEmpty()) {
+			SysPackage p = pending.remove(pending.size() - 1);
+			if(!p.isAnalysed()) {
+				SysAnalysis.analysePackage(p, getPath(root, p), true);
+				analysed++;
+			}
+			pending.addAll(p.getPackages());
+		}
+		return analysed;
+	}
+
+	/**
+	 * Analyses every class and aspect already in the model, inner classes included.
+	 * @return the number of classes analysed by this call
+	 */
+	public static int analyseAllClasses(SysRoot root) {
+		int analysed = 0;
+		List<SysClass> pending = new ArrayList<SysClass>();
+		for(SysPackage p : getAllPackages(root)) {
+			pending.addAll(p.getClasses());
+			pending.addAll(p.getAspects());
+		}
+		while(!pending.isEmpty()) {
+			SysClass c = pending.remove(pending.size() - 1);
+			if(!c.isAnalysed()) {
+				ClassAnalysis2.analyseClass(c, root);
+				c.setIsAnalysed(true);
+				analysed++;
+			}
+			pending.addAll(c.getInnerClasses());
+		}
+		return analysed;
+	}
+
+	/**
+	 * Analyses the calls of every method and piece of advice in the model. A method that can not be analysed
+	 * is reported and skipped, it does not stop the analysis of the others.
+	 * @return the number of methods analysed by this call
+	 */
+	public static int analyseAllMethods(SysRoot root) {
+		int analysed = 0;
+		for(SysMethod m : getAllMethods(root)) {
+			if(m.isAnalysed() || m.getMethod() == null) continue; //constructors have no java.lang.reflect.Method
+			try {
+				MethodAnalysis.analyseMethod(m, root);
+				m.setIsAnalysed(true);
+				analysed++;
+			} catch(RuntimeException e) {
+				System.err.println("[ProjectAnalysis]: could not analyse \"" + m.getFullyQualifiedName() + "\": " + e);
+			}
+		}
+		return analysed;
+	}
+
+	/**@return every package of the model, nested ones included*/
+	public static List<SysPackage> getAllPackages(SysRoot root) {
+		List<SysPackage> all = new ArrayList<SysPackage>();
+		List<SysPackage> pending = new ArrayList<SysPackage>(root.getPackages());
+		while(!pending.isEmpty()) {
+			SysPackage p = pending.remove(pending.size() - 1);
+			all.add(p);
+			pending.addAll(p.getPackages());
+		}
+		return all;
+	}
+
+	/**@return every class and aspect of the model, inner classes included*/
+	public static List<SysClass> getAllClasses(SysRoot root) {
+		List<SysClass> all = new ArrayList<SysClass>();
+		List<SysClass> pending = new ArrayList<SysClass>();
+		for(SysPackage p : getAllPackages(root)) {
+			pending.addAll(p.getClasses());
+			pending.addAll(p.getAspects());
+		}
+		while(!pending.isEmpty()) {
+			SysClass c = pending.remove(pending.size() - 1);
+			all.add(c);
+			pending.addAll(c.getInnerClasses());
+		}
+		return all;
+	}
+
+	/**@return every method and piece of advice of the model*/
+	public static List<SysMethod> getAllMethods(SysRoot root) {
+		List<SysMethod> all = new ArrayList<SysMethod>();
+		for(SysClass c : getAllClasses(root)) {
+			all.addAll(c.getMethods());
+			if(c instanceof SysAspect) {
+				for(SysAdvice ad : ((SysAspect)c).getAdvice()) {
+					all.add(ad);
+				}
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * @return the methods that call each method of the list, every caller once even when it calls the method
+	 * from several places. The model only knows the calls of a method, so they are indexed in a single pass.
+	 */
+	public static Map<SysMethod, List<SysMethod>> getCallers(List<SysMethod> methods) {
+		//constructors have no java.lang.reflect.Method, so they are equal to each other for SysMethod.equals
+		Map<SysMethod, List<SysMethod>> callers = new IdentityHashMap<SysMethod, List<SysMethod>>();
+		for(SysMethod m : methods) {
+			for(SysMethod called : m.getCalls()) {
+				List<SysMethod> l = callers.get(called);
+				if(l == null) {
+					l = new ArrayList<SysMethod>(2);
+					callers.put(called, l);
+				}
+				//the calls of m are indexed one after the other, so m is last if it was already added
+				if(l.isEmpty() || l.get(l.size() - 1) != m) l.add(m);
+			}
+		}
+		return callers;
+	}
+
+	/**@return the directory of the given package inside the bin directory of the root*/
+	public static String getPath(SysRoot root, SysPackage p) {
+		return root.getPath() + File.separator + p.getFullyQualifiedName().replace(".", File.separator);
+	}
+
+}
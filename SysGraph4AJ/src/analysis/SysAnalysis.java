@@ -2,7 +2,9 @@ package analysis;
 
 import java.io.File;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.Method;
@@ -10,6 +12,7 @@ import org.aspectj.lang.annotation.Aspect;
 
 import model.SysAspect;
 import model.SysClass;
+import model.SysElement;
 import model.SysPackage;
 import model.SysRoot;
 
@@ -23,6 +26,14 @@ public class SysAnalysis {
 
 
 	public static void analysePackage(SysPackage p, String path, boolean recursively) {
+		analysePackage(p, path, recursively, null);
+	}
+
+	/**
+	 * Analyses the package telling the listener about every class, aspect and package added to it.
+	 * If the listener stops the analysis, the package is left not analysed.
+	 */
+	public static void analysePackage(SysPackage p, String path, boolean recursively, AnalysisListener listener) {
 
 		File rootFile = null; //cobaia directory
 		boolean isDefaultPackage = false;
@@ -54,7 +65,14 @@ public class SysAnalysis {
 		/*add classes and directories to the current package*/
 		String name;
 		int i;
+		int done = 0;
+		int total = classes.size() + directories.size();
+		/*the elements found are added in batches that double in size: the package is copied for every batch,
+		  not for every element (see SnapshotMap), and the first ones are still shown at once*/
+		List<SysElement> found = new ArrayList<SysElement>();
+		int published = 0;
 		for(File f : classes){
+			done++;
 			name = f.getName();
 			if(name.contains("$")) continue; //exclude file if it's an inner class
 			i = name.indexOf("."); //exclude ".class" in name 
@@ -64,22 +82,37 @@ public class SysAnalysis {
 				fully = fully.substring("(default package).".length());
 			}
 			Class<?> c = null;
+			SysClass added;
 			try {
 				System.out.println("[SysAnalysis]: class for name \'" + fully + "\'");
 				c = FileLoader.forName(fully); //return a reference to system classLoader - HelloWorld
 				if(c.getAnnotation(Aspect.class) != null){
-					p.add(new SysAspect(name));
+					added = new SysAspect(name);
 				} else {
-					p.add(new SysClass(name));
+					added = new SysClass(name);
 				}
 			} catch (ClassNotFoundException e) {
 				e.printStackTrace();
-				p.add(new SysClass(name)); //add class to package, not inner classes
+				added = new SysClass(name); //add class to package, not inner classes
+			}
+			found.add(added);
+			if(found.size() >= published) published += publish(p, found);
+			if(listener != null && !listener.analysed(added, done, total)) {
+				publish(p, found);
+				return;
 			}
 		}
 		for(File f : directories){
-			p.add(new SysPackage(f.getName()));
+			done++;
+			SysPackage added = new SysPackage(f.getName());
+			found.add(added);
+			if(found.size() >= published) published += publish(p, found);
+			if(listener != null && !listener.analysed(added, done, total)) {
+				publish(p, found);
+				return;
+			}
 		}
+		publish(p, found);
 
 		/*if there is just one package in this package, program will analyse it automatically*/
 		/*This is really necessary?*/
@@ -90,6 +123,15 @@ public class SysAnalysis {
 		p.setIsAnalysed(true);
 	}  
 
+	/**adds the elements found to the package at once and forgets them, see {@link SysPackage#addAll(List)}
+	 * @return the number of elements added*/
+	private static int publish(SysPackage p, List<SysElement> found) {
+		int added = found.size();
+		p.addAll(found);
+		found.clear();
+		return added;
+	}
+
 	public static String getVisibility(Field fd) {
 		if(fd.isPrivate()) return "private";
 		if(fd.isPublic()) return "public";
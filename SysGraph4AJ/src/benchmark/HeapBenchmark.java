@@ -0,0 +1,288 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import model.SysAdvice;
+import model.SysAspect;
+import model.SysClass;
+import model.SysMethod;
+import model.SysPackage;
+import model.SysRoot;
+import analysis.ProjectAnalysis;
+import analysis.SysAnalysis;
+import cfg.gui.CFGUIContext;
+import cfg.model.CFGNode;
+
+/**
+ * Measures how much heap the Sys* model and the CFGs retain, using generated projects of increasing size.
+ * <br>
+ * For every size a project is generated with {@link SyntheticProjectGenerator}, fully analysed and a CFG is
+ * built for a share of its methods. The model is then released layer by layer (CFGs, pieces of advice, methods,
+ * classes and finally the SysRoot) and the live heap is measured after each step with a class histogram, which
+ * forces a full GC. The difference between two measures is what the released layer retained, so caches that
+ * outlive the model (class loaders, BCEL repository) are not counted.
+ * <br>
+ * Each size produces one JSON object per line, on the standard output or in the file given by {@code out=}.
+ */
+public class HeapBenchmark {
+
+	private static final String HISTOGRAM_MBEAN = "com.sun.management:type=DiagnosticCommand";
+
+	private int cfgEvery = 10;
+	private boolean verbose = false;
+	private Map<String, long[]> lastHistogram = new HashMap<String, long[]>();
+
+	/**
+	 * Runs the benchmark for a single generated project.
+	 * @param binDir where the project is generated. It should be empty.
+	 * @return a JSON object with the measures
+	 */
+	public String run(SyntheticProjectGenerator generator, File binDir) throws IOException {
+		generator.generate(binDir);
+		long empty = liveBytes();
+
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		if(!verbose) {
+			PrintStream quiet = new PrintStream(new OutputStream() {
+				public void write(int b) {
+					//analysis output is discarded while measuring
+				}
+			});
+			System.setOut(quiet);
+			System.setErr(quiet);
+		}
+		SysRoot root;
+		List<CFGNode> cfgs = new ArrayList<CFGNode>();
+		long analysisTime = System.nanoTime();
+		try {
+			root = SysAnalysis.initialModel(binDir.getAbsolutePath());
+			ProjectAnalysis.analyseAllPackages(root);
+			ProjectAnalysis.analyseAllClasses(root);
+			ProjectAnalysis.analyseAllMethods(root);
+			int i = 0;
+			for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+				if(m.getMethod() != null && i++ % cfgEvery == 0) {
+					try {
+						cfgs.add(CFGUIContext.CFG_BUILDER.build(m.getMethod()));
+					} catch(RuntimeException e) {
+						err.println("[HeapBenchmark]: no CFG for \"" + m.getFullyQualifiedName() + "\": " + e);
+					}
+				}
+			}
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+		}
+		analysisTime = System.nanoTime() - analysisTime;
+
+		List<SysPackage> packages = ProjectAnalysis.getAllPackages(root);
+		List<SysClass> classes = ProjectAnalysis.getAllClasses(root);
+		List<SysMethod> methods = new ArrayList<SysMethod>();
+		List<SysAdvice> advice = new ArrayList<SysAdvice>();
+		for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+			if(m instanceof SysAdvice) advice.add((SysAdvice)m);
+			else methods.add(m);
+		}
+		int classCount = classes.size();
+		int methodCount = methods.size();
+		int adviceCount = advice.size();
+		int cfgNodes = countNodes(cfgs);
+
+		long full = liveBytes();
+		Map<String, long[]> histogram = lastHistogram;
+
+		cfgs.clear();
+		long noCfg = liveBytes();
+
+		for(SysMethod m : methods) {
+			m.getAffecters().clear();
+		}
+		for(SysAdvice ad : advice) {
+			((SysAspect)ad.getOwner()).remove(ad);
+		}
+		advice.clear();
+		long noAdvice = liveBytes();
+
+		for(SysClass c : classes) {
+			for(SysMethod m : c.getMethods()) {
+				c.remove(m);
+			}
+		}
+		methods.clear();
+		long noMethods = liveBytes();
+
+		for(SysPackage p : packages) {
+			for(SysClass c : p.getClasses()) {
+				p.remove(c);
+			}
+			for(SysAspect a : p.getAspects()) {
+				p.remove(a);
+			}
+		}
+		classes.clear();
+		long noClasses = liveBytes();
+
+		root = null;
+		packages.clear();
+		long released = liveBytes();
+
+		StringBuilder json = new StringBuilder("{");
+		field(json, "classes", classCount);
+		field(json, "methods", methodCount);
+		field(json, "advice", adviceCount);
+		field(json, "packages", countOf(histogram, "model.SysPackage"));
+		field(json, "cfgNodes", cfgNodes);
+		field(json, "analysisMs", analysisTime / 1000000L);
+		field(json, "bytesPerSysClass", perElement(noMethods - noClasses, classCount));
+		field(json, "bytesPerSysMethod", perElement(noAdvice - noMethods, methodCount));
+		field(json, "bytesPerSysAdvice", perElement(noCfg - noAdvice, adviceCount));
+		field(json, "bytesPerCFGNode", perElement(full - noCfg, cfgNodes));
+		field(json, "shallowSysClass", shallow(histogram, "model.SysClass"));
+		field(json, "shallowSysMethod", shallow(histogram, "model.SysMethod"));
+		field(json, "shallowSysAdvice", shallow(histogram, "model.SysAdvice"));
+		field(json, "shallowCFGNode", shallow(histogram, "cfg.model.CFGNode"));
+		field(json, "cfgRetained", full - noCfg);
+		field(json, "sysRootRetained", noCfg - released);
+		field(json, "packagesAndRootRetained", noClasses - released);
+		field(json, "liveBeforeAnalysis", empty);
+		field(json, "maxHeap", Runtime.getRuntime().maxMemory());
+		field(json, "estimatedClassesPerGiB", perElement(1L << 30, perElement(noCfg - released, classCount)));
+		json.setLength(json.length() - 1);
+		return json.append("}").toString();
+	}
+
+	/**
+	 * @return the bytes of live objects in the heap, after a full GC. The class histogram is kept in
+	 * lastHistogram. If the diagnostic command is not available, the used heap after System.gc() is returned.
+	 */
+	private long liveBytes() {
+		lastHistogram = null; //the previous histogram must not be counted as live
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			String histogram = (String) server.invoke(new ObjectName(HISTOGRAM_MBEAN), "gcClassHistogram",
+					new Object[] {new String[0]}, new String[] {String[].class.getName()});
+			return parseHistogram(histogram);
+		} catch(Exception e) {
+			lastHistogram = new HashMap<String, long[]>();
+			for(int i = 0; i < 3; i++) {
+				System.gc();
+				try {
+					Thread.sleep(100);
+				} catch(InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			Runtime rt = Runtime.getRuntime();
+			return rt.totalMemory() - rt.freeMemory();
+		}
+	}
+
+	/**
+	 * Parses lines such as " 12:  3456  78900  model.SysClass" and the final "Total  ...  ..." line.
+	 * Only the model and CFG classes are kept, so the parsed histogram stays small.
+	 * int[] is left out of the total: G1 fills the end of regions with int[] objects whose size changes from
+	 * one full GC to the next, and neither the model nor the CFGs allocate int arrays.
+	 */
+	private long parseHistogram(String histogram) {
+		Map<String, long[]> classes = new HashMap<String, long[]>();
+		long total = 0;
+		for(String line : histogram.split("\n")) {
+			String[] cols = line.trim().split("\\s+");
+			if(cols.length >= 3 && cols[0].equals("Total")) {
+				total += Long.parseLong(cols[2]);
+			} else if(cols.length >= 4 && cols[3].equals("[I")) {
+				total -= Long.parseLong(cols[2]);
+			} else if(cols.length >= 4 && cols[0].endsWith(":") && (cols[3].startsWith("model.") || cols[3].startsWith("cfg."))) {
+				classes.put(cols[3], new long[] {Long.parseLong(cols[1]), Long.parseLong(cols[2])});
+			}
+		}
+		lastHistogram = classes;
+		return total;
+	}
+
+	private static int countNodes(List<CFGNode> cfgs) {
+		Set<CFGNode> visited = new HashSet<CFGNode>();
+		List<CFGNode> pending = new ArrayList<CFGNode>(cfgs);
+		while(!pending.isEmpty()) {
+			CFGNode node = pending.remove(pending.size() - 1);
+			if(node != null && visited.add(node)) {
+				pending.addAll(node.getChildNodes().keySet());
+			}
+		}
+		return visited.size();
+	}
+
+	private static int countOf(Map<String, long[]> histogram, String className) {
+		long[] entry = histogram.get(className);
+		return entry == null ? -1 : (int) entry[0];
+	}
+
+	private static long shallow(Map<String, long[]> histogram, String className) {
+		long[] entry = histogram.get(className);
+		return entry == null || entry[0] == 0 ? -1 : entry[1] / entry[0];
+	}
+
+	private static long perElement(long bytes, long count) {
+		return count <= 0 ? -1 : bytes / count;
+	}
+
+	private static void field(StringBuilder json, String name, long value) {
+		json.append('"').append(name).append("\":").append(value).append(',');
+	}
+
+	public void setCfgEvery(int cfgEvery) {
+		this.cfgEvery = Math.max(1, cfgEvery);
+	}
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Usage: HeapBenchmark &lt;work dir&gt; [sizes=1000,10000] [cfgEvery=10] [out=file] [verbose=false]<br>
+	 * Every size is a number of classes, its project is generated in &lt;work dir&gt;/&lt;size&gt;.
+	 * Run each release with the same -Xmx and JVM flags so the numbers are comparable.
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.err.println("usage: HeapBenchmark <work dir> [sizes=1000,10000] [cfgEvery=10] [out=file] [verbose=false]");
+			System.exit(1);
+		}
+		String sizes = "1000,10000";
+		PrintStream out = System.out;
+		HeapBenchmark benchmark = new HeapBenchmark();
+		for(int i = 1; i < args.length; i++) {
+			String key = args[i].substring(0, args[i].indexOf('='));
+			String value = args[i].substring(args[i].indexOf('=') + 1);
+			if(key.equals("sizes")) sizes = value;
+			else if(key.equals("cfgEvery")) benchmark.setCfgEvery(Integer.parseInt(value));
+			else if(key.equals("verbose")) benchmark.setVerbose(Boolean.parseBoolean(value));
+			else if(key.equals("out")) out = new PrintStream(new FileOutputStream(value, true), true);
+			else System.err.println("[HeapBenchmark]: unknown option \"" + key + "\" ignored");
+		}
+		for(String size : sizes.split(",")) {
+			int classes = Integer.parseInt(size.trim());
+			File binDir = new File(args[0], String.valueOf(classes));
+			if(binDir.exists()) {
+				System.err.println("[HeapBenchmark]: \"" + binDir + "\" already exists, the generated classes will overwrite it");
+			}
+			out.println(benchmark.run(SyntheticProjectGenerator.ofSize(classes), binDir));
+		}
+		if(out != System.out) out.close();
+	}
+}
@@ -0,0 +1,361 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Writes a synthetic bin directory that can be opened by {@link analysis.SysAnalysis#initialModel(String)}.
+ * <br>
+ * The generated project has a single root package ({@link #ROOT_PACKAGE}) holding N packages, each one with
+ * M classes of K static methods. Every method calls {@code callDensity} random methods of the project and the
+ * first {@code recursionDepth} methods of each class form a call cycle. Each package may also contain aspects
+ * that look like ajc output: an {@code @Aspect} class with {@code ajc$before/after/around} pieces of advice,
+ * {@code ajc$pointcut} members and the {@code aspectOf()} call woven at the start of the advised methods.
+ * <br>
+ * The output is deterministic for a given seed, so scanner, resolver, CFG and layout timings can be compared
+ * between runs.
+ */
+public class SyntheticProjectGenerator implements Opcodes {
+
+	public static final String ROOT_PACKAGE = "synth";
+
+	private static final String ASPECT_DESC = "Lorg/aspectj/lang/annotation/Aspect;";
+	private static final String POINTCUT_DESC = "Lorg/aspectj/lang/annotation/Pointcut;";
+	private static final String[] ADVICE_KINDS = {"before", "after", "around"};
+	private static final String[] ADVICE_ANNOTATIONS = {"Lorg/aspectj/lang/annotation/Before;",
+		"Lorg/aspectj/lang/annotation/After;", "Lorg/aspectj/lang/annotation/Around;"};
+
+	private int packages = 10;
+	private int classesPerPackage = 10;
+	private int methodsPerClass = 10;
+	private int callDensity = 2;
+	private int recursionDepth = 3;
+	private int aspectsPerPackage = 1;
+	private int advicePerAspect = 3;
+	private int advisedPercent = 10;
+	private long seed = 42L;
+
+	/**
+	 * Creates a generator whose shape targets the given number of classes, about a hundred classes per package.
+	 * Handy for the usual 1k, 10k and 100k class runs.
+	 */
+	public static SyntheticProjectGenerator ofSize(int totalClasses) {
+		SyntheticProjectGenerator g = new SyntheticProjectGenerator();
+		int packages = Math.max(1, totalClasses / 100);
+		g.setPackages(packages);
+		g.setClassesPerPackage(Math.max(1, totalClasses / packages));
+		return g;
+	}
+
+	/**
+	 * Writes the whole project below the given directory.
+	 * @param binDir the directory that will act as the bin folder. It is created if it does not exist.
+	 * @return the number of .class files written
+	 */
+	public int generate(File binDir) throws IOException {
+		int written = 0;
+		for(int p = 0; p < packages; p++) {
+			File dir = new File(binDir, ROOT_PACKAGE + File.separator + packageName(p));
+			if(!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Can't create directory \"" + dir + "\"");
+			}
+			for(int c = 0; c < classesPerPackage; c++) {
+				write(new File(dir, className(c) + ".class"), makeClass(p, c));
+				written++;
+			}
+			for(int a = 0; a < aspectsPerPackage; a++) {
+				write(new File(dir, aspectName(a) + ".class"), makeAspect(p, a));
+				written++;
+			}
+		}
+		return written;
+	}
+
+	/**@return the number of classes, aspects included, that {@link #generate(File)} writes*/
+	public int getTotalClasses() {
+		return packages * (classesPerPackage + aspectsPerPackage);
+	}
+
+	/**@return the number of regular methods the generated project declares, constructors excluded*/
+	public int getTotalMethods() {
+		return packages * classesPerPackage * methodsPerClass;
+	}
+
+	private byte[] makeClass(int p, int c) {
+		String internalName = internalName(p, className(c));
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, internalName, null, "java/lang/Object", null);
+		makeConstructor(cw);
+		for(int m = 0; m < methodsPerClass; m++) {
+			makeMethod(cw, p, c, m);
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Each method runs a two-step loop around its calls so that the CFG builder also has branches to process.
+	 */
+	private void makeMethod(ClassWriter cw, int p, int c, int m) {
+		long global = ((long)p * classesPerPackage + c) * methodsPerClass + m;
+		Random random = new Random(seed ^ (global * 0x9E3779B97F4A7C15L));
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, methodName(m), "()V", null, null);
+		mv.visitCode();
+
+		//woven advice, as ajc does: Aspect.aspectOf().ajc$kind$...()
+		if(aspectsPerPackage > 0 && advicePerAspect > 0 && random.nextInt(100) < advisedPercent) {
+			int a = random.nextInt(aspectsPerPackage);
+			int ad = random.nextInt(advicePerAspect);
+			String aspect = internalName(p, aspectName(a));
+			mv.visitMethodInsn(INVOKESTATIC, aspect, "aspectOf", "()L" + aspect + ";");
+			mv.visitMethodInsn(INVOKEVIRTUAL, aspect, adviceName(p, a, ad), "()V");
+		}
+
+		Label loop = new Label();
+		Label end = new Label();
+		mv.visitInsn(ICONST_0);
+		mv.visitVarInsn(ISTORE, 0);
+		mv.visitLabel(loop);
+		mv.visitVarInsn(ILOAD, 0);
+		mv.visitInsn(ICONST_2);
+		mv.visitJumpInsn(IF_ICMPGE, end);
+
+		if(recursionDepth > 0 && m < Math.min(recursionDepth, methodsPerClass)) {
+			int next = (m + 1) % Math.min(recursionDepth, methodsPerClass);
+			mv.visitMethodInsn(INVOKESTATIC, internalName(p, className(c)), methodName(next), "()V");
+		}
+		for(int i = 0; i < callDensity; i++) {
+			int tp = random.nextInt(packages);
+			int tc = random.nextInt(classesPerPackage);
+			int tm = random.nextInt(methodsPerClass);
+			mv.visitMethodInsn(INVOKESTATIC, internalName(tp, className(tc)), methodName(tm), "()V");
+		}
+
+		mv.visitIincInsn(0, 1);
+		mv.visitJumpInsn(GOTO, loop);
+		mv.visitLabel(end);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private byte[] makeAspect(int p, int a) {
+		String internalName = internalName(p, aspectName(a));
+		String desc = "L" + internalName + ";";
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, internalName, null, "java/lang/Object", null);
+		cw.visitAnnotation(ASPECT_DESC, true).visitEnd();
+		cw.visitField(ACC_PUBLIC + ACC_STATIC + ACC_FINAL, "ajc$perSingletonInstance", desc, null, null).visitEnd();
+		makeConstructor(cw);
+
+		MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+		mv.visitCode();
+		mv.visitTypeInsn(NEW, internalName);
+		mv.visitInsn(DUP);
+		mv.visitMethodInsn(INVOKESPECIAL, internalName, "<init>", "()V");
+		mv.visitFieldInsn(PUTSTATIC, internalName, "ajc$perSingletonInstance", desc);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "aspectOf", "()" + desc, null, null);
+		mv.visitCode();
+		mv.visitFieldInsn(GETSTATIC, internalName, "ajc$perSingletonInstance", desc);
+		mv.visitInsn(ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC + ACC_STATIC, "hasAspect", "()Z", null, null);
+		mv.visitCode();
+		mv.visitInsn(ICONST_1);
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for(int ad = 0; ad < advicePerAspect; ad++) {
+			String pointcut = "pc" + ad;
+			String expression = "execution(* " + ROOT_PACKAGE + "." + packageName(p) + ".*."
+					+ methodName(ad % Math.max(1, methodsPerClass)) + "(..))";
+
+			mv = cw.visitMethod(ACC_PRIVATE + ACC_SYNTHETIC, "ajc$pointcut$$" + pointcut + "$" + hash(internalName + pointcut), "()V", null, null);
+			AnnotationVisitor av = mv.visitAnnotation(POINTCUT_DESC, true);
+			av.visit("value", expression);
+			av.visit("argNames", "");
+			av.visitEnd();
+			mv.visitCode();
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+
+			int kind = ad % ADVICE_KINDS.length;
+			mv = cw.visitMethod(ACC_PUBLIC, adviceName(p, a, ad), "()V", null, null);
+			av = mv.visitAnnotation(ADVICE_ANNOTATIONS[kind], true);
+			av.visit("value", pointcut + "()");
+			av.visit("argNames", "");
+			av.visitEnd();
+			mv.visitCode();
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void makeConstructor(ClassWriter cw) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**ajc names advice as ajc$kind$package_Aspect$number$hash*/
+	private String adviceName(int p, int a, int ad) {
+		String owner = internalName(p, aspectName(a));
+		return "ajc$" + ADVICE_KINDS[ad % ADVICE_KINDS.length] + "$" + owner.replace('/', '_') + "$" + (ad + 1) + "$" + hash(owner + ad);
+	}
+
+	private static String hash(String s) {
+		return Integer.toHexString(s.hashCode());
+	}
+
+	private static String internalName(int p, String simpleName) {
+		return ROOT_PACKAGE + "/" + packageName(p) + "/" + simpleName;
+	}
+
+	private static String packageName(int p) {
+		return "p" + p;
+	}
+
+	private static String className(int c) {
+		return "C" + c;
+	}
+
+	private static String aspectName(int a) {
+		return "A" + a;
+	}
+
+	private static String methodName(int m) {
+		return "m" + m;
+	}
+
+	private static void write(File f, byte[] bytes) throws IOException {
+		FileOutputStream out = new FileOutputStream(f);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	public void setPackages(int packages) {
+		this.packages = atLeast("packages", packages, 1);
+	}
+
+	public void setClassesPerPackage(int classesPerPackage) {
+		this.classesPerPackage = atLeast("classesPerPackage", classesPerPackage, 1);
+	}
+
+	public void setMethodsPerClass(int methodsPerClass) {
+		this.methodsPerClass = atLeast("methodsPerClass", methodsPerClass, 1);
+	}
+
+	/**@param callDensity number of random calls each generated method does*/
+	public void setCallDensity(int callDensity) {
+		this.callDensity = atLeast("callDensity", callDensity, 0);
+	}
+
+	/**@param recursionDepth length of the call cycle m0 -> m1 -> ... -> m0 inside every class, 0 disables it*/
+	public void setRecursionDepth(int recursionDepth) {
+		this.recursionDepth = atLeast("recursionDepth", recursionDepth, 0);
+	}
+
+	public void setAspectsPerPackage(int aspectsPerPackage) {
+		this.aspectsPerPackage = atLeast("aspectsPerPackage", aspectsPerPackage, 0);
+	}
+
+	public void setAdvicePerAspect(int advicePerAspect) {
+		this.advicePerAspect = atLeast("advicePerAspect", advicePerAspect, 0);
+	}
+
+	/**@param advisedPercent percentage of the methods that get a woven advice call*/
+	public void setAdvisedPercent(int advisedPercent) {
+		this.advisedPercent = atLeast("advisedPercent", advisedPercent, 0);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**@throws IllegalArgumentException when the value is below the minimum, e.g. no packages to pick a call from*/
+	private static int atLeast(String name, int value, int minimum) {
+		if(value < minimum) throw new IllegalArgumentException(name + " must be at least " + minimum + ", not " + value);
+		return value;
+	}
+
+	/**
+	 * Usage: SyntheticProjectGenerator &lt;bin dir&gt; [key=value ...]<br>
+	 * keys: classes (shortcut for packages and classesPerPackage), packages, classesPerPackage, methodsPerClass,
+	 * callDensity, recursionDepth, aspectsPerPackage, advicePerAspect, advisedPercent, seed
+	 */
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) usage(null);
+		SyntheticProjectGenerator g = new SyntheticProjectGenerator();
+		for(int i = 1; i < args.length; i++) {
+			int equals = args[i].indexOf('=');
+			if(equals < 1) usage("\"" + args[i] + "\" is not key=value");
+			String key = args[i].substring(0, equals);
+			try {
+				g.set(key, Long.parseLong(args[i].substring(equals + 1)));
+			} catch(IllegalArgumentException e) {
+				//also a NumberFormatException
+				usage("\"" + args[i] + "\": " + e.getMessage());
+			}
+		}
+		long start = System.nanoTime();
+		int written = g.generate(new File(args[0]));
+		System.out.println("[SyntheticProjectGenerator]: " + written + " classes written to \"" + args[0] + "\" in "
+				+ (System.nanoTime() - start) / 1000000.0d + "ms");
+	}
+
+	private void set(String key, long value) {
+		if(!key.equals("seed") && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException(value + " is out of range");
+		}
+		if(key.equals("classes")) {
+			SyntheticProjectGenerator sized = ofSize((int)value);
+			setPackages(sized.packages);
+			setClassesPerPackage(sized.classesPerPackage);
+		}
+		else if(key.equals("packages")) setPackages((int)value);
+		else if(key.equals("classesPerPackage")) setClassesPerPackage((int)value);
+		else if(key.equals("methodsPerClass")) setMethodsPerClass((int)value);
+		else if(key.equals("callDensity")) setCallDensity((int)value);
+		else if(key.equals("recursionDepth")) setRecursionDepth((int)value);
+		else if(key.equals("aspectsPerPackage")) setAspectsPerPackage((int)value);
+		else if(key.equals("advicePerAspect")) setAdvicePerAspect((int)value);
+		else if(key.equals("advisedPercent")) setAdvisedPercent((int)value);
+		else if(key.equals("seed")) setSeed(value);
+		else System.err.println("[SyntheticProjectGenerator]: unknown option \"" + key + "\" ignored");
+	}
+
+	/**Prints what went wrong, if anything, and the usage, then exits*/
+	private static void usage(String error) {
+		if(error != null) System.err.println("[SyntheticProjectGenerator]: " + error);
+		System.err.println("usage: SyntheticProjectGenerator <bin dir> [classes=1000] [packages=10] [classesPerPackage=10] "
+				+ "[methodsPerClass=10] [callDensity=2] [recursionDepth=3] [aspectsPerPackage=1] [advicePerAspect=3] "
+				+ "[advisedPercent=10] [seed=42]");
+		System.exit(1);
+	}
+}
@@ -1,5 +1,6 @@
 package cfg.gui;
 
+import visualization.SysEdge;
 import cfg.model.CFGEdgeType;
 import cfg.model.CFGNode;
 import edu.uci.ics.jung.graph.DelegateTree;
@@ -12,26 +13,21 @@ import edu.uci.ics.jung.graph.DelegateTree;
  * @author robson
  *
  */
-public class CFGEdge {
+public class CFGEdge extends SysEdge {
 
-	private CFGNode parentNode;
-	
-	private CFGNode childNode;
-	
-	private CFGEdgeType edgeType;
+	private final CFGEdgeType edgeType;
 
 	public CFGEdge(CFGNode parentNode, CFGNode childNode, CFGEdgeType edgeType) {
-		this.parentNode = parentNode;
-		this.childNode = childNode;
+		super(Kind.CFG, parentNode, childNode);
 		this.edgeType = edgeType;
 	}
 
 	public CFGNode getParentNode() {
-		return parentNode;
+		return (CFGNode) getFrom();
 	}
 
 	public CFGNode getChildNode() {
-		return childNode;
+		return (CFGNode) getTo();
 	}
 
 	public CFGEdgeType getEdgeType() {
@@ -2,21 +2,29 @@ package cfg.gui;
 
 import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
 import edu.uci.ics.jung.algorithms.layout.Layout;
-import edu.uci.ics.jung.algorithms.layout.TreeLayout;
 import edu.uci.ics.jung.graph.DelegateForest;
 import edu.uci.ics.jung.graph.DelegateTree;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.visualization.Layer;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
+import gui.AnalysisTask;
 import gui.GUIWindowInterface;
+import gui.LayoutTask;
 import gui.SysUtils;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import model.IElement;
 import model.SysMethod;
 import model.SysRoot;
-import visualization.EspecialEdgesTable;
+import visualization.ModelForest;
 import visualization.ModelToGraph;
+import visualization.SysEdge;
+import visualization.LayoutKind;
+import visualization.LayoutStore;
 import cfg.model.CFGNode;
 
 /**
@@ -27,6 +35,39 @@ import cfg.model.CFGNode;
  */
 public class CFGModelToGraph {
 
+	/**a floresta mostrada em cada janela, usada somente na thread da interface*/
+	private static final Map<GUIWindowInterface, ModelForest> forests = new WeakHashMap<GUIWindowInterface, ModelForest>();
+	/**se os vértices já mostrados ficam no lugar quando um elemento é expandido*/
+	private static boolean keepPositions = true;
+
+	public static boolean isKeepPositions() {
+		return keepPositions;
+	}
+
+	/**
+	 * @param keep
+	 * 		true para posicionar somente os vértices novos, abaixo do seu pai, quando um elemento é expandido;
+	 * 		false para calcular o layout de todo o grafo a cada expansão
+	 */
+	public static void setKeepPositions(boolean keep) {
+		keepPositions = keep;
+	}
+
+	/**o layout usado quando o grafo todo é posicionado*/
+	private static LayoutKind layoutKind = LayoutKind.TREE;
+
+	public static LayoutKind getLayoutKind() {
+		return layoutKind;
+	}
+
+	/**
+	 * @param kind
+	 * 		layout usado a partir do próximo layout de todo o grafo, veja {@link #layOutAgain(GUIWindowInterface, IElement)}
+	 */
+	public static void setLayoutKind(LayoutKind kind) {
+		layoutKind = kind;
+	}
+
 	/**
 	 * @param root
 	 * 		nó raiz que está sendo renderizado na {@link GUIWindowInterface}
@@ -35,62 +76,220 @@ public class CFGModelToGraph {
 	 * @param windowInterface
 	 * 		interface gráfica que será atualizada com as informações do CFG
 	 */
-	public static void addCFGToWindowInterface(SysRoot root, SysMethod method, GUIWindowInterface windowInterface) {
+	public static void addCFGToWindowInterface(final SysRoot root, final SysMethod method, final GUIWindowInterface windowInterface) {
 		if(CFGUIContext.allCurrentAnalysedMethods.contains(method)) {
 			return;
 		}
-		//get elapsed time to perform a CFG construction 
-		long start = System.nanoTime();
-		CFGNode cfg = CFGUIContext.CFG_BUILDER.build(method);
-		cfg.setSysMethod(CFGUIContext.currentAnalysedMethod);
-		CFGUIContext.allCurrentCFGNodes.add(cfg);
-		//get elapsed time to perform a CFG construction
-		long end = System.nanoTime();
-		String elapsed = "Elapsed time to perform action: "+(end-start)/1000000.0d+" ms\n";
-		windowInterface.getTextArea().append(elapsed);
-      
-		reloadMainGraphWithCFGInformations(root, windowInterface, cfg);
-	}
-
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	public static synchronized void reloadMainGraphWithCFGInformations(SysRoot root, GUIWindowInterface windowInterface, IElement targetElement) {
+		//o grafo é construído em segundo plano, o contexto só é alterado na thread da interface
+		new AnalysisTask<CFGNode>(windowInterface, "building the control flow graph of " + method.getName()) {
+			private long elapsed;
+
+			protected CFGNode analyse() {
+				progress(0, 1, method.getName());
+				//get elapsed time to perform a CFG construction 
+				long start = System.nanoTime();
+				CFGNode cfg = CFGUIContext.CFG_BUILDER.build(method.getMethod());
+				elapsed = System.nanoTime() - start;
+				return cfg;
+			}
+
+			protected void apply(CFGNode cfg) {
+				if(cfg == null || CFGUIContext.allCurrentAnalysedMethods.contains(method)) {
+					return;
+				}
+				CFGUIContext.currentAnalysedMethod = method;
+				CFGUIContext.allCurrentAnalysedMethods.add(method);
+				cfg.setSysMethod(method);
+				CFGUIContext.allCurrentCFGNodes.add(cfg);
+				windowInterface.getTextArea().append("Elapsed time to perform action: "+elapsed/1000000.0d+" ms\n");
+				reloadMainGraphWithCFGInformations(root, windowInterface, cfg);
+			}
+		}.submit();
+	}
+
+	/**
+	 * Atualiza o grafo da janela depois da análise de targetElement. Somente os vértices e arestas que mudaram
+	 * são adicionados ou removidos da {@link ModelForest} da janela, que é construída a partir de root somente
+	 * na primeira vez. Com {@link #isKeepPositions()} somente os vértices novos são posicionados; senão o layout
+	 * é calculado em segundo plano, sobre uma cópia da árvore, e enquanto isso o grafo é mostrado com as
+	 * posições do layout anterior ou, na primeira vez, um aviso é mostrado no lugar do grafo.
+	 */
+	public static void reloadMainGraphWithCFGInformations(SysRoot root, GUIWindowInterface windowInterface, IElement targetElement) {
+		reloadMainGraphWithCFGInformations(root, windowInterface, Collections.singletonList(targetElement));
+	}
+
+	/**
+	 * Atualiza o grafo da janela de uma vez depois da análise de todos os targetElements, por exemplo dos
+	 * pacotes analisados em seguida, veja {@link gui.UpdateScheduler}. O último elemento é centralizado.
+	 */
+	public static synchronized void reloadMainGraphWithCFGInformations(SysRoot root, GUIWindowInterface windowInterface, List<? extends IElement> targetElements) {
+		IElement targetElement = targetElements.get(targetElements.size() - 1);
 		//Obtendo referência para a floresta populada na janela
-		//No momento de analise de classes eu tenho apenas classes e pacotes. Não deveria se ter todo o grafo que representa o código em root já?
-		VisualizationViewer<IElement, Object> visualizationViewer = (VisualizationViewer<IElement, Object>) windowInterface.getCenter();
-		Layout<IElement, Object> graphLayout = visualizationViewer.getGraphLayout();
-		DelegateForest<IElement, Object> delegateForest = (DelegateForest<IElement, Object>) graphLayout.getGraph();
-		
-		//Adicionando vertices do nó raiz analisado
-		DelegateTree<IElement, Object> delegateTree = new DelegateTree<IElement, Object>();
-		delegateTree.addVertex(root);
-		delegateTree = ModelToGraph.putAllChildren_SysRoot(delegateTree, root);
-
-		//Adicionando vertices dos CFGs analisados
-		delegateForest = new DelegateForest<IElement, Object>();
-		CFGModelToGraph.addAllCFGNodesToDelegateTree(delegateTree, CFGUIContext.allCurrentCFGNodes);
-		delegateForest.addTree(delegateTree);
-
-		//Criando um novo visualizationViewer
-		AggregateLayout<IElement, Object> aggregateLayout = new AggregateLayout<IElement, Object>(new TreeLayout<IElement, Object>(delegateForest, 100, 100));
-		VisualizationViewer<IElement, Object> newVisualizationViewer = new VisualizationViewer<IElement, Object>(aggregateLayout);
-
-		//Aplica estilo no grafo, como centralizar o nó analisado e adicionar cores aos vertices
-		windowInterface.setCenterPanel(newVisualizationViewer);
-		SysUtils.makeGoodVisual(newVisualizationViewer, windowInterface);
-		windowInterface.makeMenuBar(newVisualizationViewer);
-		SysUtils.setAtCenter(targetElement, aggregateLayout, windowInterface.getFrame(), newVisualizationViewer);
+		ModelForest forest = forests.get(windowInterface);
+		boolean restored = false;
+		if(forest == null || !forest.containsVertex(root)) {
+			forest = new ModelForest();
+			forests.put(windowInterface, forest);
+			ModelToGraph.updateForest(forest, root, root);
+			restored = forest.restore(LayoutStore.of(root), 100, 100);
+		} else {
+			for(IElement element : targetElements) {
+				ModelToGraph.updateForest(forest, root, element);
+			}
+		}
+
+		//Adicionando vertices dos CFGs analisados que ainda não estão na floresta
+		for(CFGNode node : CFGUIContext.allCurrentCFGNodes) {
+			addCFGToForest(root, node, forest);
+		}
+
+		for(IElement element : targetElements) {
+			windowInterface.getTextArea().append("Analysing: " + element.toString()+"\n");
+		}
+		VisualizationViewer<IElement, SysEdge> visualizationViewer = getVisualizationViewer(windowInterface, forest);
+		if(visualizationViewer != null && keepPositions && forest.placeAdded(100, 100)) {
+			//o resto do grafo e a visão do usuário não mudam
+			visualizationViewer.setGraphLayout(new AggregateLayout<IElement, SysEdge>(forest.layout()));
+			visualizationViewer.repaint();
+		} else if(restored && forest.placeAdded(100, 100)) {
+			showForest(forest, forest.layout(), windowInterface, targetElement);
+		} else {
+			layOut(forest, windowInterface, targetElement);
+		}
+	}
+
+	/**
+	 * Mostra o grafo de root na janela, com uma floresta nova. As posições guardadas da última vez que o
+	 * projeto foi aberto são restauradas e somente os elementos novos são posicionados, veja {@link LayoutStore};
+	 * sem posições guardadas o layout é calculado em segundo plano.
+	 */
+	public static synchronized void showMainGraph(SysRoot root, GUIWindowInterface windowInterface) {
+		ModelForest forest = new ModelForest();
+		forests.put(windowInterface, forest);
+		ModelToGraph.updateForest(forest, root, root);
+		if(forest.restore(LayoutStore.of(root), 100, 100)) {
+			showForest(forest, forest.layout(), windowInterface, root);
+		} else {
+			layOut(forest, windowInterface, root);
+		}
+	}
+
+	/**
+	 * Guarda as posições dos vértices mostrados na janela, inclusive as dos vértices movidos pelo usuário, para
+	 * a próxima vez que o projeto for aberto. Não faz nada se a janela não mostra o grafo de root.
+	 */
+	public static void savePositions(SysRoot root, GUIWindowInterface windowInterface) {
+		ModelForest forest = forests.get(windowInterface);
+		if(forest == null || !forest.containsVertex(root)) {
+			return;
+		}
+		VisualizationViewer<IElement, SysEdge> visualizationViewer = getVisualizationViewer(windowInterface, forest);
+		if(visualizationViewer != null) {
+			LayoutStore store = LayoutStore.of(root);
+			store.record(visualizationViewer.getGraphLayout(), forest.getTree());
+			store.save();
+		}
+	}
+
+	/**
+	 * Calcula de novo o layout de todo o grafo da janela, e não só dos vértices novos.
+	 * 
+	 * @param targetElement
+	 * 		elemento centralizado na janela depois do layout
+	 */
+	public static void layOutAgain(GUIWindowInterface windowInterface, IElement targetElement) {
+		ModelForest forest = forests.get(windowInterface);
+		if(forest != null) {
+			layOut(forest, windowInterface, targetElement);
+		}
+	}
+
+	/**
+	 * Calcula o layout da floresta em segundo plano e o aplica à janela. O layout em árvore usa uma cópia da
+	 * árvore; os outros usam uma cópia de toda a floresta, com as chamadas e as referências.
+	 */
+	private static void layOut(final ModelForest forest, final GUIWindowInterface windowInterface, final IElement targetElement) {
+		VisualizationViewer<IElement, SysEdge> visualizationViewer = getVisualizationViewer(windowInterface, forest);
+		if(visualizationViewer != null) {
+			visualizationViewer.setGraphLayout(new AggregateLayout<IElement, SysEdge>(forest.layout()));
+		} else {
+			windowInterface.setCenterPanel(LayoutTask.placeholder(forest.getVertexCount() + " vertices"));
+		}
+		final LayoutKind kind = layoutKind;
+		final DelegateForest<IElement, SysEdge> tree = forest.snapshotTree();
+		final Graph<IElement, SysEdge> graph = kind == LayoutKind.TREE ? null : forest.snapshot();
+		new LayoutTask<Layout<IElement, SysEdge>>(windowInterface) {
+			protected Layout<IElement, SysEdge> layout() {
+				return kind.layout(tree, graph, 100, 100);
+			}
+
+			protected void apply(Layout<IElement, SysEdge> treeLayout) {
+				showForest(forest, forest.layout(treeLayout), windowInterface, targetElement);
+			}
+		}.submit();
+	}
+
+	/**Mostra a floresta com o layout dado, no mesmo {@link VisualizationViewer} quando ele já a mostra*/
+	private static void showForest(ModelForest forest, Layout<IElement, SysEdge> layout, GUIWindowInterface windowInterface, IElement targetElement) {
+		AggregateLayout<IElement, SysEdge> aggregateLayout = new AggregateLayout<IElement, SysEdge>(layout);
+		VisualizationViewer<IElement, SysEdge> visualizationViewer = getVisualizationViewer(windowInterface, forest);
+		if(visualizationViewer == null) {
+			//Aplica estilo no grafo, como centralizar o nó analisado e adicionar cores aos vertices
+			visualizationViewer = new VisualizationViewer<IElement, SysEdge>(aggregateLayout);
+			windowInterface.setCenterPanel(visualizationViewer);
+			SysUtils.makeGoodVisual(visualizationViewer, windowInterface);
+			windowInterface.makeMenuBar(visualizationViewer);
+		} else {
+			visualizationViewer.setGraphLayout(aggregateLayout);
+			visualizationViewer.getRenderContext().getMultiLayerTransformer().getTransformer(Layer.LAYOUT).setToIdentity();
+		}
+		SysUtils.setAtCenter(targetElement, aggregateLayout, windowInterface.getFrame(), visualizationViewer);
+		visualizationViewer.repaint();
+	}
 
+	/**@return o {@link VisualizationViewer} da janela se ele mostra a floresta, senão null*/
+	@SuppressWarnings("unchecked")
+	private static VisualizationViewer<IElement, SysEdge> getVisualizationViewer(GUIWindowInterface windowInterface, ModelForest forest) {
+		if(windowInterface.getCenter() instanceof VisualizationViewer) {
+			VisualizationViewer<IElement, SysEdge> visualizationViewer = (VisualizationViewer<IElement, SysEdge>) windowInterface.getCenter();
+			if(visualizationViewer.getGraphLayout().getGraph() == forest) {
+				return visualizationViewer;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adiciona o CFG abaixo do seu método na floresta, com as suas arestas de referência, se ainda não estiver lá.
+	 * 
+	 * @param node
+	 * 		nó raiz do CFG
+	 */
+	public static void addCFGToForest(SysRoot root, CFGNode node, ModelForest forest) {
+		if(forest.containsVertex(node) || !ModelToGraph.addToForest(forest, root, node.getSysMethod())) {
+			return;
+		}
+		forest.addChild(node.getSysMethod(), node);
+		addCFGNodeAndItsChildrenToForest(node, forest);
 		//Adiciona arestas de referências após a criação da árvore, pois essas arestas formam 'ciclos' na floresta, 'quebrando' a árvore
-		EspecialEdgesTable<IElement, Object> et = ModelToGraph.getEspecialEdges((SysRoot) root, delegateForest);
-		ModelToGraph.addEspecialEdges(delegateForest, et);
-		CFGModelToGraph.addAllReferenceEdgesFromCFGToDelegateForest(delegateForest, CFGUIContext.allCurrentCFGNodes);
+		addReferenceEdgesToForest(node, forest);
+	}
 
-		windowInterface.getTextArea().append("Analysing: " + targetElement.toString()+"\n");
-		
-		//Adiciona ao prompt da tela as informações dos nós analisados
-		((VisualizationViewer) windowInterface.getCenter()).updateUI();
+	private static void addCFGNodeAndItsChildrenToForest(CFGNode root, ModelForest forest) {
+		for(IElement node : root.getChildElements()) {
+			CFGNode childNode = (CFGNode) node;
+			CFGEdge edge = new CFGEdge(root, childNode, root.getChildTypeByNode(childNode));
+			childNode.setSysMethod(root.getSysMethod());
+
+			if(!forest.containsVertex(childNode)) {
+				forest.addChild(edge);
+				addCFGNodeAndItsChildrenToForest(childNode, forest);
+			} else {
+				System.err.println("[CFGModelToGraph] Nó " + childNode + " não adicionado! Já existe esse nó na arvore");
+			}
+		}
 	}
-	
+
 	/**
 	 * 
 	 * @param delegateTree
@@ -98,10 +297,10 @@ public class CFGModelToGraph {
 	 * @param nodes
 	 * 		lista de {@link CFGNode} a serem adicionados na {@link DelegateTree}.
 	 */
-	public static void addAllCFGNodesToDelegateTree(DelegateTree<IElement, Object> delegateTree, List<CFGNode> nodes) {
+	public static void addAllCFGNodesToDelegateTree(DelegateTree<IElement, SysEdge> delegateTree, List<CFGNode> nodes) {
 		if(delegateTree != null && nodes != null) {
 			for(CFGNode node : nodes) {
-				delegateTree.addChild(UUID.randomUUID(), node.getSysMethod(), node);
+				delegateTree.addChild(SysEdge.contains(node.getSysMethod(), node), node.getSysMethod(), node);
 				addCFGNodeAndItsChildrenToTree(node, delegateTree);
 			}
 		}
@@ -114,7 +313,7 @@ public class CFGModelToGraph {
 	 * @param nodes
 	 * 		lista de {@link CFGNode} a serem adicionados na {@link DelegateTree}.
 	 */
-	public static void addAllReferenceEdgesFromCFGToDelegateForest(DelegateForest<IElement, Object> delegateForest, List<CFGNode> nodes) {
+	public static void addAllReferenceEdgesFromCFGToDelegateForest(DelegateForest<IElement, SysEdge> delegateForest, List<CFGNode> nodes) {
 		if(delegateForest != null && nodes != null) {
 			for(CFGNode node : nodes) {
 				addReferenceEdgesToForest(node, delegateForest);
@@ -130,7 +329,7 @@ public class CFGModelToGraph {
 	 * 		árvore que será atualizada com o nó e seus respectivos filhos
 	 */
 	@SuppressWarnings("unchecked")
-	public static void addCFGNodeAndItsChildrenToTree(CFGNode root, DelegateTree<IElement, Object> delegateTree) {
+	public static void addCFGNodeAndItsChildrenToTree(CFGNode root, DelegateTree<IElement, SysEdge> delegateTree) {
 		if(delegateTree.getVertexCount() == 0) {
 			delegateTree.addVertex(root);
 		}
@@ -154,7 +353,7 @@ public class CFGModelToGraph {
 	}
 	
 	@SuppressWarnings("unchecked")
-	public static synchronized void addReferenceEdgesToForest(final CFGNode root, DelegateForest<IElement, Object> delegateForest) {
+	public static synchronized void addReferenceEdgesToForest(final CFGNode root, DelegateForest<IElement, SysEdge> delegateForest) {
 		if(root == null){
 			return;
 		} else{
@@ -0,0 +1,373 @@
+package cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.SysAdvice;
+import model.SysAspect;
+import model.SysClass;
+import model.SysElement;
+import model.SysMethod;
+import model.SysPackage;
+import analysis.AnalysisSession;
+import cfg.model.CFGEdgeType;
+import cfg.model.CFGNode;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long running analysis of a project that answers queries over HTTP, on the loopback interface only.
+ * <br>
+ * The project is analysed once when the daemon starts and kept in an {@link AnalysisSession}, so a query
+ * costs a lookup in memory instead of a JVM start and a whole analysis. Requests are handled by a pool of
+ * threads. Every answer is a JSON object. Methods are named by their id, "fully.qualified.name (signature)",
+ * or by their fully qualified name alone, which selects all its overloads.
+ * <ul>
+ * <li>GET /element?name=... - a package, class or method and its children</li>
+ * <li>GET /callers?method=... - the methods that call it</li>
+ * <li>GET /callees?method=... - the methods it calls</li>
+ * <li>GET /advice?method=... - the pieces of advice that affect it</li>
+ * <li>GET /cfg?method=... - its control flow graph</li>
+ * <li>POST /analyse?scope=... - analyses what is still missing in a package or class, all of it without scope</li>
+ * <li>GET /status - what is in the model</li>
+ * </ul>
+ * Only local clients are answered: a request whose Host is not the loopback address, e.g. a DNS name bound to
+ * it by a web site, or that has an Origin, sent by a script of a web page, is refused with 403. An element or
+ * method that is not in the model is answered with 404, a malformed query with 400.
+ */
+public class AnalysisDaemon {
+
+	/**the names of the loopback interface a local client puts in the Host header*/
+	private static final String[] LOCAL_HOSTS = {"localhost", "127.0.0.1", "[::1]"};
+
+	private final AnalysisSession session;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public AnalysisDaemon(AnalysisSession session) {
+		this.session = session;
+	}
+
+	/**starts answering on the given port of the loopback interface, 0 for any free port*/
+	public void start(int port, int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				answer(exchange);
+			}
+		});
+		server.start();
+	}
+
+	/**@return the port the daemon answers on*/
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**stops answering and closes the session*/
+	public void stop() throws IOException {
+		if(server != null) {
+			server.stop(0);
+			executor.shutdown();
+			server = null;
+		}
+		session.close();
+	}
+
+	private void answer(HttpExchange exchange) throws IOException {
+		int status = 200;
+		String body;
+		try {
+			URI uri = exchange.getRequestURI();
+			String refused = refused(exchange);
+			if(refused != null) {
+				status = 403;
+				body = error(refused);
+			} else {
+				body = query(exchange.getRequestMethod(), uri.getPath(), parameters(uri.getRawQuery()));
+				if(body == null) {
+					status = 404;
+					body = error("unknown query \"" + uri.getPath() + "\"");
+				}
+			}
+		} catch(NoSuchElementException e) {
+			status = 404;
+			body = error(e.getMessage());
+		} catch(IllegalArgumentException e) {
+			status = 400;
+			body = error(e.getMessage());
+		} catch(RuntimeException e) {
+			status = 500;
+			body = error(e.toString());
+		}
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**@return why the request is refused, null if it comes from a local client*/
+	private static String refused(HttpExchange exchange) {
+		if(exchange.getRequestHeaders().containsKey("Origin")) {
+			return "requests from web pages are refused";
+		}
+		String host = exchange.getRequestHeaders().getFirst("Host");
+		if(host == null || !isLocal(host.toLowerCase(), exchange.getLocalAddress().getPort())) {
+			return "unknown host \"" + host + "\"";
+		}
+		return null;
+	}
+
+	private static boolean isLocal(String host, int port) {
+		for(String name : LOCAL_HOSTS) {
+			//the port can be left out only when it is the default one
+			if(host.equals(name + ":" + port) || (port == 80 && host.equals(name))) return true;
+		}
+		return false;
+	}
+
+	/**@return the JSON answer, null for an unknown path*/
+	String query(String httpMethod, String path, Map<String, String> parameters) {
+		if(path.equals("/status")) {
+			return "{\"path\":" + quote(session.getPath()) + ",\"packages\":" + session.getPackages().size()
+					+ ",\"classes\":" + session.getClasses().size() + ",\"methods\":" + session.getMethods().size() + "}";
+		}
+		if(path.equals("/analyse")) {
+			if(!httpMethod.equals("POST")) throw new IllegalArgumentException("/analyse must be a POST");
+			return "{\"analysed\":" + session.analyse(parameters.get("scope")) + "}";
+		}
+		if(path.equals("/element")) {
+			SysElement e = session.find(required(parameters, "name"));
+			if(e == null) {
+				List<SysMethod> overloads = session.findMethods(parameters.get("name"));
+				if(overloads.isEmpty()) throw new NoSuchElementException("\"" + parameters.get("name") + "\" not found");
+				StringBuilder json = new StringBuilder("{\"overloads\":[");
+				for(SysMethod m : overloads) {
+					element(m, json);
+					json.append(',');
+				}
+				return end(json, ']').append('}').toString();
+			}
+			return element(e, new StringBuilder()).toString();
+		}
+		if(path.equals("/callers") || path.equals("/callees") || path.equals("/advice") || path.equals("/cfg")) {
+			StringBuilder json = new StringBuilder("{\"methods\":[");
+			for(SysMethod m : methods(required(parameters, "method"))) {
+				json.append("{\"id\":").append(quote(AnalysisSession.idOf(m))).append(',');
+				if(path.equals("/callers")) {
+					ids("callers", session.getCallers(m), json);
+				} else if(path.equals("/callees")) {
+					ids("callees", session.getCallees(m), json);
+				} else if(path.equals("/advice")) {
+					ids("advice", session.getAdvice(m), json);
+				} else if(m.getMethod() == null) {
+					json.append("\"cfg\":null");
+				} else {
+					cfg(session.getCfg(m), json.append("\"cfg\":"));
+				}
+				json.append("},");
+			}
+			return end(json, ']').append('}').toString();
+		}
+		return null;
+	}
+
+	private List<SysMethod> methods(String name) {
+		SysElement e = session.find(name);
+		if(e instanceof SysMethod) {
+			List<SysMethod> l = new ArrayList<SysMethod>(1);
+			l.add((SysMethod)e);
+			return l;
+		}
+		List<SysMethod> overloads = session.findMethods(name);
+		if(overloads.isEmpty()) throw new NoSuchElementException("method \"" + name + "\" not found");
+		return overloads;
+	}
+
+	private static StringBuilder element(SysElement e, StringBuilder json) {
+		json.append("{\"kind\":").append(quote(kind(e)));
+		json.append(",\"name\":").append(quote(e instanceof SysMethod ? AnalysisSession.idOf((SysMethod)e) : e.getFullyQualifiedName()));
+		if(e instanceof SysPackage) {
+			SysPackage p = (SysPackage)e;
+			json.append(",\"analysed\":").append(p.isAnalysed()).append(',');
+			names("packages", p.getPackages(), json).append(',');
+			names("classes", p.getClasses(), json).append(',');
+			names("aspects", p.getAspects(), json);
+		} else if(e instanceof SysClass) {
+			SysClass c = (SysClass)e;
+			json.append(",\"analysed\":").append(c.isAnalysed());
+			if(c.getSuperClass() != null) json.append(",\"superClass\":").append(quote(c.getSuperClass().getName()));
+			json.append(',');
+			names("innerClasses", c.getInnerClasses(), json).append(',');
+			ids("methods", c.getMethods(), json);
+			if(c instanceof SysAspect) ids("advice", ((SysAspect)c).getAdvice(), json.append(','));
+		} else if(e instanceof SysMethod) {
+			SysMethod m = (SysMethod)e;
+			json.append(",\"analysed\":").append(m.isAnalysed());
+			json.append(",\"visibility\":").append(quote(m.getVisibility()));
+			json.append(",\"static\":").append(m.isStatic());
+			if(m instanceof SysAdvice) json.append(",\"adviceType\":").append(quote(((SysAdvice)m).getAdviceType()));
+		}
+		return json.append('}');
+	}
+
+	private static String kind(SysElement e) {
+		if(e instanceof SysPackage) return "package";
+		if(e instanceof SysAspect) return "aspect";
+		if(e instanceof SysClass) return "class";
+		if(e instanceof SysAdvice) return "advice";
+		return "method";
+	}
+
+	private static StringBuilder names(String field, Collection<? extends SysElement> elements, StringBuilder json) {
+		json.append(quote(field)).append(":[");
+		for(SysElement e : elements) {
+			json.append(quote(e.getFullyQualifiedName())).append(',');
+		}
+		return end(json, ']');
+	}
+
+	private static StringBuilder ids(String field, Collection<? extends SysMethod> methods, StringBuilder json) {
+		json.append(quote(field)).append(":[");
+		for(SysMethod m : methods) {
+			json.append(quote(AnalysisSession.idOf(m))).append(',');
+		}
+		return end(json, ']');
+	}
+
+	/**writes the nodes of the graph and the edges between them, nodes are numbered from the root*/
+	private static void cfg(CFGNode root, StringBuilder json) {
+		Map<CFGNode, Integer> ids = new IdentityHashMap<CFGNode, Integer>();
+		List<CFGNode> nodes = new ArrayList<CFGNode>();
+		StringBuilder edges = new StringBuilder();
+		ids.put(root, 0);
+		nodes.add(root);
+		for(int i = 0; i < nodes.size(); i++) {
+			CFGNode node = nodes.get(i);
+			for(Map.Entry<CFGNode, CFGEdgeType> child : node.getChildNodes().entrySet()) {
+				if(child.getKey() == null) continue;
+				if(!ids.containsKey(child.getKey())) {
+					ids.put(child.getKey(), nodes.size());
+					nodes.add(child.getKey());
+				}
+				edges.append("{\"from\":").append(i).append(",\"to\":").append(ids.get(child.getKey()));
+				if(child.getValue() != null) edges.append(",\"type\":").append(quote(child.getValue().toString()));
+				edges.append("},");
+			}
+		}
+		json.append("{\"nodes\":[");
+		for(CFGNode node : nodes) {
+			json.append(quote(node.toString())).append(',');
+		}
+		end(json, ']').append(",\"edges\":[").append(edges);
+		end(json, ']').append('}');
+	}
+
+	/**replaces a trailing comma, if any, by the given character*/
+	private static StringBuilder end(StringBuilder json, char c) {
+		if(json.charAt(json.length() - 1) == ',') json.setLength(json.length() - 1);
+		return json.append(c);
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + quote(String.valueOf(message)) + "}";
+	}
+
+	static String quote(String s) {
+		if(s == null) return "null";
+		StringBuilder q = new StringBuilder(s.length() + 2).append('"');
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+			case '"': q.append("\\\""); break;
+			case '\\': q.append("\\\\"); break;
+			case '\n': q.append("\\n"); break;
+			case '\r': q.append("\\r"); break;
+			case '\t': q.append("\\t"); break;
+			default:
+				if(c < 0x20) q.append(String.format("\\u%04x", (int) c));
+				else q.append(c);
+			}
+		}
+		return q.append('"').toString();
+	}
+
+	private static String required(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if(value == null || value.isEmpty()) throw new IllegalArgumentException("parameter \"" + name + "\" is missing");
+		return value;
+	}
+
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if(query == null) return parameters;
+		try {
+			for(String pair : query.split("&")) {
+				int i = pair.indexOf('=');
+				if(i == -1) parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+				else parameters.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"), URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+			}
+		} catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return parameters;
+	}
+
+	/**
+	 * Usage: AnalysisDaemon [-port &lt;port&gt;] [-threads &lt;n&gt;] &lt;bin dir&gt;[&lt;path separator&gt;&lt;library&gt;...]
+	 */
+	public static void main(String[] args) throws IOException {
+		System.setProperty("java.awt.headless", "true");
+		int port = 7070;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String classpath = null;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-port") && i + 1 < args.length) port = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+			else classpath = args[i];
+		}
+		if(classpath == null) {
+			System.err.println("usage: AnalysisDaemon [-port <port>] [-threads <n>] <bin dir>[" + File.pathSeparator + "<library>...]");
+			System.exit(2);
+		}
+		long t = System.nanoTime();
+		final AnalysisDaemon daemon = new AnalysisDaemon(AnalysisSession.open(classpath));
+		daemon.session.analyse(null);
+		daemon.start(port, Math.max(1, threads));
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				try {
+					daemon.stop();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		System.out.println("[AnalysisDaemon]: " + daemon.session.getClasses().size() + " classes analysed in "
+				+ (System.nanoTime() - t) / 1000000L + "ms, answering on http://127.0.0.1:" + daemon.getPort() + "/");
+	}
+}
@@ -0,0 +1,295 @@
+package cli;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.SysAdvice;
+import model.SysAspect;
+import model.SysClass;
+import model.SysMethod;
+import model.SysPackage;
+import model.SysPointcut;
+import model.SysRoot;
+
+import org.junit.runner.JUnitCore;
+
+import analysis.AnalysisSession;
+import analysis.CoverageAnalysis;
+import analysis.FileLoader;
+import analysis.ProjectAnalysis;
+import analysis.SysAnalysis;
+import cfg.gui.CFGUIContext;
+import cfg.model.CFGEdgeType;
+import cfg.model.CFGNode;
+
+/**
+ * Headless entry point: analyses a whole project from the command line and writes the results to files.
+ * Nothing here touches AWT or Swing, so it runs on servers without a display.
+ * <br>
+ * Files written in the output directory:
+ * <ul>
+ * <li>model.tsv - one line per package, class, aspect, method, advice and pointcut</li>
+ * <li>calls.tsv - the call graph, one caller/callee pair per line, advice included</li>
+ * <li>callgraph.dot - the same graph for Graphviz</li>
+ * <li>cfg/*.dot - the control flow graph of every method (with -cfg)</li>
+ * <li>coverage.txt - the coverage of every class after running a JUnit class (with -coverage)</li>
+ * <li>analysis.log - what the analysis prints while running</li>
+ * </ul>
+ */
+public class BatchAnalysis {
+
+	private File outDir = new File("sysgraph-out");
+	private boolean buildCfgs = false;
+	private String junitClass = null;
+	private PrintStream console = System.out;
+
+	/**
+	 * Runs the analysis.
+	 * @param classpath the bin directory of the project, optionally followed by the jars and directories it
+	 * depends on, separated by {@link File#pathSeparator}
+	 * @return the analysed model
+	 */
+	public SysRoot run(String classpath) throws IOException {
+		String[] entries = classpath.split(File.pathSeparator);
+		File[] libraries = new File[entries.length - 1];
+		for(int i = 1; i < entries.length; i++) {
+			libraries[i - 1] = new File(entries[i]);
+		}
+		if(!outDir.isDirectory() && !outDir.mkdirs()) {
+			throw new IOException("Can't create directory \"" + outDir + "\"");
+		}
+
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		PrintStream log = new PrintStream(new FileOutputStream(new File(outDir, "analysis.log")), false, "UTF-8");
+		System.setOut(log);
+		System.setErr(log);
+		SysRoot root;
+		try {
+			FileLoader.setLibraries(libraries);
+			long t = System.nanoTime();
+			root = SysAnalysis.initialModel(entries[0]);
+			if(root == null) {
+				throw new IOException("Can't read \"" + entries[0] + "\"");
+			}
+			int packages = ProjectAnalysis.analyseAllPackages(root);
+			report(packages + " packages analysed", t);
+
+			t = System.nanoTime();
+			report(ProjectAnalysis.analyseAllClasses(root) + " classes analysed", t);
+
+			t = System.nanoTime();
+			report(ProjectAnalysis.analyseAllMethods(root) + " methods analysed", t);
+
+			if(buildCfgs) {
+				t = System.nanoTime();
+				report(writeCfgs(root) + " CFGs written", t);
+			}
+			if(junitClass != null) {
+				t = System.nanoTime();
+				report(writeCoverage(root) + " classes covered", t);
+			}
+		} finally {
+			System.setOut(out);
+			System.setErr(err);
+			log.close();
+		}
+		writeModel(root);
+		writeCalls(root);
+		console.println("[BatchAnalysis]: results written to \"" + outDir.getAbsolutePath() + "\"");
+		return root;
+	}
+
+	private void report(String what, long start) {
+		console.println("[BatchAnalysis]: " + what + " in " + (System.nanoTime() - start) / 1000000.0d + "ms");
+	}
+
+	private void writeModel(SysRoot root) throws IOException {
+		PrintWriter w = open("model.tsv");
+		try {
+			w.println("kind\tname\tdetails");
+			for(SysPackage p : ProjectAnalysis.getAllPackages(root)) {
+				w.println("package\t" + p.getFullyQualifiedName() + "\t");
+			}
+			for(SysClass c : ProjectAnalysis.getAllClasses(root)) {
+				w.println((c instanceof SysAspect ? "aspect" : "class") + "\t" + c.getFullyQualifiedName() + "\t"
+						+ (c.getSuperClass() == null ? "" : "extends " + c.getSuperClass().getName()));
+			}
+			for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+				if(m instanceof SysAdvice) {
+					w.println("advice\t" + id(m) + "\t" + ((SysAdvice)m).getAdviceType());
+				} else {
+					w.println("method\t" + id(m) + "\t" + m.getVisibility() + (m.isStatic() ? " static" : ""));
+				}
+			}
+			for(SysClass c : ProjectAnalysis.getAllClasses(root)) {
+				if(!(c instanceof SysAspect)) continue;
+				for(SysPointcut p : ((SysAspect)c).getPointcuts()) {
+					//named after the aspect, a pointcut has an owner only once it is in an advice
+					w.println("pointcut\t" + c.getFullyQualifiedName() + "." + p.getName() + "\t" + p.getExpression());
+				}
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	private void writeCalls(SysRoot root) throws IOException {
+		PrintWriter tsv = open("calls.tsv");
+		PrintWriter dot = open("callgraph.dot");
+		try {
+			tsv.println("kind\tfrom\tto");
+			dot.println("digraph calls {");
+			for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+				for(SysMethod called : m.getCalls()) {
+					tsv.println("call\t" + id(m) + "\t" + id(called));
+					dot.println("  " + quote(id(m)) + " -> " + quote(id(called)) + ";");
+				}
+				if(m instanceof SysAdvice) {
+					for(SysMethod affected : ((SysAdvice)m).getAffecteds()) {
+						tsv.println("advises\t" + id(m) + "\t" + id(affected));
+						dot.println("  " + quote(id(m)) + " -> " + quote(id(affected)) + " [style=dashed];");
+					}
+				}
+			}
+			dot.println("}");
+		} finally {
+			tsv.close();
+			dot.close();
+		}
+	}
+
+	/**builds and writes the CFG of every method that has bytecode, returns how many were written*/
+	private int writeCfgs(SysRoot root) throws IOException {
+		File cfgDir = new File(outDir, "cfg");
+		if(!cfgDir.isDirectory() && !cfgDir.mkdirs()) {
+			throw new IOException("Can't create directory \"" + cfgDir + "\"");
+		}
+		int written = 0;
+		for(SysMethod m : ProjectAnalysis.getAllMethods(root)) {
+			if(m.getMethod() == null) continue;
+			CFGNode cfg;
+			try {
+				cfg = CFGUIContext.CFG_BUILDER.build(m.getMethod());
+			} catch(RuntimeException e) {
+				System.err.println("[BatchAnalysis]: no CFG for \"" + id(m) + "\": " + e);
+				continue;
+			}
+			String name = (m.getFullyQualifiedName() + m.getSignature()).replaceAll("[^A-Za-z0-9_.$-]", "_");
+			PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(cfgDir, name + ".dot")), "UTF-8"));
+			try {
+				writeCfg(cfg, id(m), w);
+			} finally {
+				w.close();
+			}
+			written++;
+		}
+		return written;
+	}
+
+	private static void writeCfg(CFGNode cfg, String method, PrintWriter w) {
+		w.println("digraph " + quote(method) + " {");
+		Map<CFGNode, Integer> ids = new IdentityHashMap<CFGNode, Integer>();
+		List<CFGNode> pending = new ArrayList<CFGNode>();
+		pending.add(cfg);
+		ids.put(cfg, 0);
+		while(!pending.isEmpty()) {
+			CFGNode node = pending.remove(pending.size() - 1);
+			w.println("  n" + ids.get(node) + " [label=" + quote(node.toString()) + "];");
+			for(Map.Entry<CFGNode, CFGEdgeType> child : node.getChildNodes().entrySet()) {
+				if(child.getKey() == null) continue;
+				if(!ids.containsKey(child.getKey())) {
+					ids.put(child.getKey(), ids.size());
+					pending.add(child.getKey());
+				}
+				w.println("  n" + ids.get(node) + " -> n" + ids.get(child.getKey())
+						+ (child.getValue() == null ? "" : " [label=" + quote(child.getValue().toString()) + "]") + ";");
+			}
+		}
+		w.println("}");
+	}
+
+	/**runs the JUnit class against the instrumented project and writes the coverage of every class*/
+	private int writeCoverage(SysRoot root) throws IOException {
+		PrintWriter w = open("coverage.txt");
+		int classes = 0;
+		try {
+			FileLoader.getRuntime().startup(FileLoader.getData());
+			Class<?> test = FileLoader.getClassLoader().loadClass(junitClass);
+			new JUnitCore().run(test);
+			for(SysClass c : ProjectAnalysis.getAllClasses(root)) {
+				String name = c.getFullyQualifiedName();
+				if(name.startsWith("(default package).")) {
+					name = name.substring("(default package).".length());
+				}
+				w.print(CoverageAnalysis.getCoverage(name));
+				classes++;
+			}
+		} catch(Exception e) {
+			throw new IOException("Can't run \"" + junitClass + "\" for coverage: " + e, e);
+		} finally {
+			w.close();
+		}
+		return classes;
+	}
+
+	private PrintWriter open(String name) throws IOException {
+		return new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(outDir, name)), "UTF-8"));
+	}
+
+	/**@return the name that identifies a method in the output files, its fully qualified name and signature*/
+	static String id(SysMethod m) {
+		return AnalysisSession.idOf(m);
+	}
+
+	private static String quote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	public void setOutDir(File outDir) {
+		this.outDir = outDir;
+	}
+
+	public void setBuildCfgs(boolean buildCfgs) {
+		this.buildCfgs = buildCfgs;
+	}
+
+	/**@param junitClass the JUnit class run to collect coverage, null to skip coverage*/
+	public void setJUnitClass(String junitClass) {
+		this.junitClass = junitClass;
+	}
+
+	/**
+	 * Usage: BatchAnalysis [-o &lt;output dir&gt;] [-cfg] [-coverage &lt;JUnit class&gt;] &lt;bin dir&gt;[&lt;path separator&gt;&lt;library&gt;...]
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		BatchAnalysis batch = new BatchAnalysis();
+		String classpath = null;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].equals("-o") && i + 1 < args.length) batch.setOutDir(new File(args[++i]));
+			else if(args[i].equals("-cfg")) batch.setBuildCfgs(true);
+			else if(args[i].equals("-coverage") && i + 1 < args.length) batch.setJUnitClass(args[++i]);
+			else classpath = args[i];
+		}
+		if(classpath == null) {
+			System.err.println("usage: BatchAnalysis [-o <output dir>] [-cfg] [-coverage <JUnit class>] <bin dir>["
+					+ File.pathSeparator + "<library>...]");
+			System.exit(2);
+		}
+		try {
+			batch.run(classpath);
+		} catch(IOException e) {
+			System.err.println("[BatchAnalysis]: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * An analysis requested by the GUI. It runs on a background thread, so the window keeps painting and
+ * answering while it runs, and its result is applied to the window on the event dispatch thread.
+ * <br>
+ * Tasks run one at a time, in the order they were submitted, because the analysers share static state.
+ * A task that takes a while shows a progress monitor with the elements done and the total. The user can
+ * cancel it there: the task stops after the element being analysed and what was done so far is applied.
+ * <br>
+ * Long tasks also publish their partial results in batches (see {@link #publishBatch()}), so the window
+ * shows the first elements at once and grows while the rest is analysed.
+ */
+public abstract class AnalysisTask<T> extends SwingWorker<T, Object> {
+
+	/**the shortest time between two batches, the first batch is published at once*/
+	private static final long BATCH_MILLIS = 500;
+	private static final Object BATCH = new Object();
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "SysGraph4AJ analysis");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**the tasks submitted and not done yet, of every window*/
+	private static final AtomicInteger pending = new AtomicInteger();
+
+	private final GUIWindowInterface window;
+	private final String description;
+	private volatile int done = 0;
+	private volatile int total = 0;
+	private volatile String current = "";
+	private volatile boolean stopRequested = false;
+	private long lastBatch = 0;
+	private ProgressMonitor monitor = null;
+	private final Timer timer;
+
+	/**@param description what the task does, e.g. "analysing package p", shown in the progress monitor*/
+	public AnalysisTask(GUIWindowInterface window, String description) {
+		this.window = window;
+		this.description = description;
+		this.timer = new Timer(200, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				showProgress();
+			}
+		});
+	}
+
+	/**runs on the analysis thread. Implementations call {@link #progress(int, int, String)} for every element
+	 * and return as soon as {@link #stopRequested()} is true.*/
+	protected abstract T analyse() throws Exception;
+
+	/**runs on the event dispatch thread with the result of {@link #analyse()}, also when it was cancelled*/
+	protected abstract void apply(T result);
+
+	/**
+	 * Runs on the event dispatch thread when a batch of partial results was published, to show the elements
+	 * analysed so far. Does nothing by default.
+	 */
+	protected void applyBatch() {
+		//only tasks that publish batches show partial results
+	}
+
+	/**queues the task. Must be called on the event dispatch thread.*/
+	public void submit() {
+		timer.start();
+		pending.incrementAndGet();
+		EXECUTOR.execute(this);
+	}
+
+	/**@return the tasks queued or running, of every window*/
+	public static int getPending() {
+		return pending.get();
+	}
+
+	/**@return true when the user cancelled the task*/
+	protected boolean stopRequested() {
+		return stopRequested;
+	}
+
+	/**reports that {@code done} of {@code total} elements are analysed and {@code current} is the next one*/
+	protected void progress(int done, int total, String current) {
+		this.done = done;
+		this.total = total;
+		this.current = current == null ? "" : current;
+	}
+
+	/**
+	 * Asks for the elements analysed so far to be shown with {@link #applyBatch()}. Called on the analysis
+	 * thread, as often as wanted: batches are throttled, so the window is not rebuilt for every element.
+	 */
+	protected void publishBatch() {
+		long now = System.currentTimeMillis();
+		if(now - lastBatch >= BATCH_MILLIS) {
+			lastBatch = now;
+			publish(BATCH);
+		}
+	}
+
+	protected final T doInBackground() throws Exception {
+		return analyse();
+	}
+
+	protected final void process(List<Object> batches) {
+		if(!isDone()) { //the final result is shown by apply
+			applyBatch();
+		}
+	}
+
+	private void showProgress() {
+		if(monitor == null) {
+			monitor = new ProgressMonitor(window.getFrame(), description, "", 0, 1);
+			monitor.setMillisToDecideToPopup(300);
+			monitor.setMillisToPopup(600);
+		}
+		monitor.setMaximum(total + 1); //the monitor closes itself when the progress reaches the maximum
+		monitor.setNote(done + " / " + total + "  " + current);
+		monitor.setProgress(done);
+		if(monitor.isCanceled()) {
+			stopRequested = true;
+		}
+	}
+
+	protected final void done() {
+		pending.decrementAndGet();
+		timer.stop();
+		if(monitor != null) {
+			monitor.close();
+		}
+		T result;
+		try {
+			result = get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch(ExecutionException e) {
+			window.getTextArea().append("Could not finish " + description + ": " + e.getCause() + "\n");
+			e.getCause().printStackTrace();
+			return;
+		}
+		if(stopRequested) {
+			window.getTextArea().append("Cancelled " + description + " after " + done + " of " + total + "\n");
+		}
+		apply(result);
+	}
+
+}
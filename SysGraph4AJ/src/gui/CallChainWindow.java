@@ -6,14 +6,28 @@
 package gui;
 
 import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
+import javax.swing.ButtonGroup;
 import javax.swing.JFrame;
+import javax.swing.JMenu;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JTextArea;
 
 import model.IElement;
 import model.SysMethod;
 import model.SysRoot;
+import visualization.CallChainCache;
 import visualization.CallChainM2G;
+import visualization.SysEdge;
+import analysis.AnalysisListener;
 import analysis.MethodAnalysis;
 import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
@@ -29,62 +43,158 @@ public class CallChainWindow extends JFrame implements GUIWindowInterface {
 	 */
 	private static final long serialVersionUID = 1L;
 	
+	/**the levels of callees shown when a call chain window opens*/
+	public static final int DEFAULT_DEPTH = 2;
+
 	private SysRoot root;
 	private SysMethod m;
+	/**the levels of callees shown below m*/
+	private int depth = DEFAULT_DEPTH;
+	/**the methods whose callees are shown even if they are deeper, only changed on the event dispatch thread*/
+	private final Set<SysMethod> expanded = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
 	private Container center = this.getContentPane();
 	private JTextArea textArea = new JTextArea();
 
 	/**@param m the SysMethod that will start the call chain graph
 	 * @param root the SysRoot in which the SysMethod is child*/
 	public CallChainWindow(SysMethod m, SysRoot root) {
-		super("CallChain >>> " + m);
-		this.m = m;
-		this.root = root;
-		CallChainM2G cc = new CallChainM2G();
-		AggregateLayout<IElement, Object> al = cc.doAggregateLayout(root,m); 
-		VisualizationViewer<IElement,Object> vv = new CallChainM2G().makeVV(al);
-		this.add(vv);
-		SysUtils.makeGoodVisual(vv, this);
-		makeMenuBar(vv);
-		vv.setSize(this.getSize());
-		this.pack();
-		SysUtils.setAtCenter(m, al, this, vv);
-
+		this(m, root, false);
 	}
 
 
 	/**
-	 * Open a new CallChainWindow analysing the given method recursively
+	 * Open a new CallChainWindow analysing the given method recursively.
+	 * The window opens with the call chain known so far, the analysis runs in background and the
+	 * graph is reloaded when it is done.
 	 * @param m the SysMethod that will start the call chain graph
 	 * @param root the SysRoot in which the SysMethod is a child of
+	 * @param b whether the called methods are analysed too, recursively
 	 * */
 	public CallChainWindow(SysMethod m, SysRoot root, boolean b) {
 		super("CallChain >>> "+m);
 		this.m=m;
 		this.root=root;
-		if(b){
-			recur(root,m);
-		}
-		CallChainM2G cc = new CallChainM2G();
-		AggregateLayout<IElement, Object> al = cc.doAggregateLayout(root,m); 
-		VisualizationViewer<IElement,Object> vv = new CallChainM2G().makeVV(al);
-		this.add(vv);
-		SysUtils.makeGoodVisual(vv, this);
-		makeMenuBar(vv);
+		this.setCenterPanel(LayoutTask.placeholder("the call chain of " + m.getName()));
 		this.pack();
-		SysUtils.setAtCenter(m, al, this, vv);
+		reload();
+		if(b || !m.isAnalysed()) {
+			analyse(b);
+		}
 	}
 
+	/**analyses the method of this window, and the methods it calls if {@param recursively}, in background*/
+	private void analyse(final boolean recursively) {
+		new AnalysisTask<Integer>(this, "analysing the call chain of " + m.getName()) {
+			protected Integer analyse() {
+				return recur(this, recursively);
+			}
 
+			protected void applyBatch() {
+				getScheduler().requestUpdate(m);
+			}
 
-	/**analyse the method {@param m2} recursively */
-	private void recur(SysRoot root2, SysMethod m2) {
-		if(m2.isAnalysed() && !m.equals(m2)) return;
-		MethodAnalysis.analyseMethod(m2, root);
-		for(SysMethod m : m2.getCalls()){
-			recur(root2,m);
+			protected void apply(Integer analysed) {
+				getTextArea().append(analysed + " methods analysed\n");
+				getScheduler().requestUpdate(m);
+			}
+		}.submit();
+	}
+
+	/**
+	 * analyse the method m and the methods it calls, breadth first. Methods analysed before are not
+	 * analysed again and their calls are not followed, except for m itself.
+	 * @return the number of methods analysed
+	 */
+	private int recur(AnalysisTask<?> task, boolean recursively) {
+		Set<SysMethod> seen = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
+		List<SysMethod> pending = new ArrayList<SysMethod>();
+		pending.add(m);
+		seen.add(m);
+		int analysed = 0;
+		for(int i = 0; i < pending.size() && !task.stopRequested(); i++) {
+			SysMethod m2 = pending.get(i);
+			if(m2 != m && m2.isAnalysed()) continue;
+			if(!m2.isAnalysed() && m2.getMethod() != null) { //constructors have no java.lang.reflect.Method
+				task.progress(i, pending.size(), m2.getName());
+				try {
+					MethodAnalysis.analyseMethod(m2, root);
+					m2.setIsAnalysed(true);
+					analysed++;
+					task.publishBatch(); //the first levels of the chain are shown while the rest is analysed
+				} catch(RuntimeException e) {
+					System.err.println("[CallChainWindow]: could not analyse \"" + m2.getFullyQualifiedName() + "\": " + e);
+				}
+			}
+			if(!recursively) break;
+			for(SysMethod called : m2.getCalls()) {
+				if(seen.add(called)) pending.add(called);
+			}
 		}
+		return analysed;
+	}
 
+	/**
+	 * shows the callees of the method, analysing it first if it was not. Only that method is analysed.
+	 * @param method a method of the call chain, e.g. the method of a {@link visualization.MoreStub}
+	 */
+	public void expand(final SysMethod method) {
+		expanded.add(method);
+		if(method.isAnalysed() || method.getMethod() == null) {
+			getScheduler().requestUpdate(method);
+			return;
+		}
+		//the methods expanded meanwhile are analysed in the same task and shown together
+		getScheduler().requestAnalysis(method, "analysing " + method.getName(), new UpdateScheduler.Analysis() {
+			public boolean analyse(AnalysisListener listener) {
+				if(!method.isAnalysed()) {
+					MethodAnalysis.analyseMethod(method, root);
+					method.setIsAnalysed(true);
+				}
+				return true; //expanded, shown even if analysed meanwhile
+			}
+		});
+	}
+
+	/**@return the scheduler of the window, which rebuilds the call chain once for all the methods analysed meanwhile*/
+	private UpdateScheduler getScheduler() {
+		return UpdateScheduler.of(this, new UpdateScheduler.Updater() {
+			public void update(List<IElement> changed) {
+				reload();
+			}
+		});
+	}
+
+	/**@param depth the levels of callees shown below the method of the window*/
+	public void setDepth(int depth) {
+		this.depth = depth;
+		reload();
+	}
+
+	/**
+	 * rebuilds the call chain graph from the model, e.g. after its methods were analysed. The graph is built
+	 * and laid out in background, the window shows the previous graph meanwhile.
+	 */
+	public void reload() {
+		final boolean first = !(this.center instanceof VisualizationViewer);
+		final int depth = this.depth;
+		final Set<SysMethod> expanded = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
+		expanded.addAll(this.expanded);
+		new LayoutTask<AggregateLayout<IElement, SysEdge>>(this) {
+			protected AggregateLayout<IElement, SysEdge> layout() {
+				return CallChainCache.doAggregateLayout(root, m, depth, expanded);
+			}
+
+			protected void apply(AggregateLayout<IElement, SysEdge> al) {
+				VisualizationViewer<IElement, SysEdge> vv = new CallChainM2G().makeVV(al);
+				setCenterPanel(vv);
+				makeGoodVisual(vv);
+				validate();
+				if(first) {
+					SysUtils.setAtCenter(m, al, CallChainWindow.this, vv);
+				}
+				repaint();
+			}
+		}.submit();
 	}
 
 	
@@ -114,15 +224,44 @@ public class CallChainWindow extends JFrame implements GUIWindowInterface {
 	}
 
 	
-	public void makeGoodVisual(VisualizationViewer<IElement, Object> vv) {
+	public void makeGoodVisual(VisualizationViewer<IElement, SysEdge> vv) {
 		SysUtils.makeGoodVisual(vv, this);
 	}
 
 	
 	/**makes a menu bar given a visualization viewer*/
-	public void makeMenuBar(VisualizationViewer<IElement, Object> vv) {
+	public void makeMenuBar(VisualizationViewer<IElement, SysEdge> vv) {
 		SysUtils.makeMenuBar(vv, this, this.root);
 		MainWindow.getInstance().makeJUnitMenu();
+		makeDepthMenu();
+	}
+
+	/**a menu to choose how many levels of callees are shown*/
+	private void makeDepthMenu() {
+		JMenu menu = new JMenu("Depth");
+		menu.setIcon(null);
+		menu.setPreferredSize(new Dimension(50,20));
+		ButtonGroup group = new ButtonGroup();
+		for(int i = 1; i <= 6; i++) {
+			final int d = i;
+			JRadioButtonMenuItem item = new JRadioButtonMenuItem(Integer.toString(i), i == depth);
+			item.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					setDepth(d);
+				}
+			});
+			group.add(item);
+			menu.add(item);
+		}
+		JRadioButtonMenuItem all = new JRadioButtonMenuItem("All", depth == Integer.MAX_VALUE);
+		all.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setDepth(Integer.MAX_VALUE);
+			}
+		});
+		group.add(all);
+		menu.add(all);
+		getJMenuBar().add(menu);
 	}
 
 	
@@ -13,6 +13,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JTextArea;
 
 import model.IElement;
+import visualization.SysEdge;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
 
 /**
@@ -27,8 +28,8 @@ public interface GUIWindowInterface {
 	public JTextArea getTextArea();
 	public void setCenterPanel(Container pane);
 	public Container getContentPane();
-	public void makeGoodVisual(VisualizationViewer<IElement, Object> vv);
-	public void makeMenuBar(VisualizationViewer<IElement, Object> vv);
+	public void makeGoodVisual(VisualizationViewer<IElement, SysEdge> vv);
+	public void makeMenuBar(VisualizationViewer<IElement, SysEdge> vv);
 	public void setJMenuBar(JMenuBar menuBar);
 	public boolean rightClickEnabled();
 	public JFrame getFrame();
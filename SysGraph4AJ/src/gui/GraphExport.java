@@ -0,0 +1,560 @@
+package gui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.swing.CellRendererPane;
+import javax.swing.JLabel;
+
+import org.apache.commons.collections15.Transformer;
+
+import model.IElement;
+import visualization.SysEdge;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.BasicVisualizationServer;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.RenderContext;
+import edu.uci.ics.jung.visualization.renderers.Renderer;
+import edu.uci.ics.jung.visualization.renderers.Renderer.VertexLabel.Position;
+import edu.uci.ics.jung.visualization.transform.MutableTransformer;
+import edu.uci.ics.jung.visualization.transform.shape.GraphicsDecorator;
+
+/**
+ * Draws a whole graph to a file, offscreen, at full size, e.g. to publish the diagram of a project that is too
+ * large to be seen in a window. The graph is drawn by the renderers of JUNG with the colors, strokes, labels
+ * and edge shapes of {@link SysTransformers}, as in the windows, but nothing is left out for being out of the
+ * window or too small. It needs no display, so it also runs headless.
+ * <ul>
+ * <li>PNG: the picture is a single file, drawn in horizontal bands of a few million pixels, every band is
+ * compressed and written before the next is drawn. The memory used does not grow with the height of the
+ * picture; a band is never less than a row, a few hundred KB for a picture 100000 pixels wide. Only the
+ * vertices and edges that reach into a band are drawn for it.</li>
+ * <li>SVG: every shape and label is written to the file as it is drawn, nothing is kept.</li>
+ * </ul>
+ */
+public class GraphExport {
+
+	/**the room around the graph, and around a band, for the shapes and labels of the vertices at its border*/
+	private static final int MARGIN = 120;
+	/**the pixels drawn at once for a PNG, 16 MB*/
+	private static final int BAND_PIXELS = 4 * 1024 * 1024;
+
+	/**told about every part of the graph drawn*/
+	public interface Progress {
+		/**@return false to stop the export, the file is deleted*/
+		boolean progress(int done, int total);
+	}
+
+	/**
+	 * @return a copy of the graph of the layout and of its positions, to be drawn while the graph shown goes
+	 * on changing. Must be called on the thread that changes the graph, e.g. the event dispatch thread.
+	 */
+	public static Layout<IElement, SysEdge> snapshot(Layout<IElement, SysEdge> layout) {
+		Graph<IElement, SysEdge> graph = layout.getGraph();
+		Graph<IElement, SysEdge> copy = new DirectedSparseMultigraph<IElement, SysEdge>();
+		final Map<IElement, Point2D> positions = new HashMap<IElement, Point2D>(graph.getVertexCount() * 2);
+		for(IElement v : graph.getVertices()) {
+			copy.addVertex(v);
+			Point2D p = layout.transform(v);
+			positions.put(v, new Point2D.Double(p.getX(), p.getY()));
+		}
+		for(SysEdge e : graph.getEdges()) {
+			Pair<IElement> ends = graph.getEndpoints(e);
+			copy.addEdge(e, ends.getFirst(), ends.getSecond());
+		}
+		return new StaticLayout<IElement, SysEdge>(copy, new Transformer<IElement, Point2D>() {
+			public Point2D transform(IElement v) {
+				Point2D p = positions.get(v);
+				return p == null ? new Point2D.Double() : new Point2D.Double(p.getX(), p.getY());
+			}
+		}, layout.getSize());
+	}
+
+	/**
+	 * @param scale the pixels of the picture for a unit of the layout
+	 * @param progress told about every band written, may be null
+	 * @return false if the progress stopped the export
+	 */
+	public static boolean writePNG(Layout<IElement, SysEdge> layout, double scale, File file, Progress progress) throws IOException {
+		Drawing drawing = new Drawing(layout, scale);
+		int width = drawing.width, height = drawing.height;
+		int bandHeight = Math.max(1, Math.min(height, BAND_PIXELS / width));
+		int bands = (height + bandHeight - 1) / bandHeight;
+		BufferedImage band = new BufferedImage(width, bandHeight, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[width];
+		boolean written = false;
+		PngWriter png = new PngWriter(new FileOutputStream(file), width, height);
+		try {
+			for(int i = 0; i < bands; i++) {
+				int top = i * bandHeight;
+				int rows = Math.min(bandHeight, height - top);
+				Graphics2D g = band.createGraphics();
+				g.setColor(Color.WHITE);
+				g.fillRect(0, 0, width, bandHeight);
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+				drawing.draw(new GraphicsDecorator(g), top, rows);
+				g.dispose();
+				for(int y = 0; y < rows; y++) {
+					band.getRGB(0, y, width, 1, row, 0, width);
+					png.writeRow(row);
+				}
+				if(progress != null && !progress.progress(i + 1, bands)) {
+					return false;
+				}
+			}
+			png.finish();
+			written = true;
+			return true;
+		} finally {
+			png.close();
+			if(!written) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * @param progress told about every thousand vertices and edges written, may be null
+	 * @return false if the progress stopped the export
+	 */
+	public static boolean writeSVG(Layout<IElement, SysEdge> layout, File file, Progress progress) throws IOException {
+		Drawing drawing = new Drawing(layout, 1);
+		boolean written = false;
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + drawing.width + "\" height=\"" + drawing.height
+					+ "\" viewBox=\"0 0 " + drawing.width + " " + drawing.height + "\">\n");
+			out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+			SvgGraphics g = new SvgGraphics(out);
+			if(!drawing.drawAll(g, progress)) {
+				return false;
+			}
+			g.check();
+			out.write("</svg>\n");
+			written = true;
+			return true;
+		} finally {
+			out.close();
+			if(!written) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * The graph with the renderers, transformers and render context of JUNG. The render context draws the layout
+	 * moved to the origin, with the margin around it, and scaled; the part drawn is given by the size of the
+	 * screen device of the context and by moving the layout up to the top of the part.
+	 */
+	private static class Drawing {
+		private final Layout<IElement, SysEdge> layout;
+		private final double scale;
+		private final double minX, minY;
+		final int width, height;
+		private final BasicVisualizationServer<IElement, SysEdge> server;
+		private final RenderContext<IElement, SysEdge> rc;
+		private final Renderer<IElement, SysEdge> renderer;
+		private final boolean labels;
+		/**the vertices by their y, and the edges by the smallest y of their ends*/
+		private final IElement[] vertices;
+		private final double[] vertexY;
+		private final SysEdge[] edges;
+		private final double[] edgeTop, edgeBottom;
+		/**the edges that may reach into the next band, and the first edge not considered yet*/
+		private final List<Integer> active = new ArrayList<Integer>();
+		private int nextEdge = 0;
+
+		Drawing(Layout<IElement, SysEdge> layout, double scale) {
+			this.layout = layout;
+			this.scale = scale;
+			Graph<IElement, SysEdge> graph = layout.getGraph();
+			final Map<IElement, Point2D> positions = new HashMap<IElement, Point2D>(graph.getVertexCount() * 2);
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for(IElement v : graph.getVertices()) {
+				Point2D p = layout.transform(v);
+				positions.put(v, p);
+				minX = Math.min(minX, p.getX());
+				minY = Math.min(minY, p.getY());
+				maxX = Math.max(maxX, p.getX());
+				maxY = Math.max(maxY, p.getY());
+			}
+			if(positions.isEmpty()) {
+				minX = minY = maxX = maxY = 0;
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.width = (int)Math.ceil((maxX - minX) * scale) + 2 * MARGIN;
+			this.height = (int)Math.ceil((maxY - minY) * scale) + 2 * MARGIN;
+
+			vertices = positions.keySet().toArray(new IElement[positions.size()]);
+			Arrays.sort(vertices, new Comparator<IElement>() {
+				public int compare(IElement a, IElement b) {
+					return Double.compare(positions.get(a).getY(), positions.get(b).getY());
+				}
+			});
+			vertexY = new double[vertices.length];
+			for(int i = 0; i < vertices.length; i++) {
+				vertexY[i] = positions.get(vertices[i]).getY();
+			}
+			edges = graph.getEdges().toArray(new SysEdge[graph.getEdgeCount()]);
+			final Map<SysEdge, double[]> spans = new HashMap<SysEdge, double[]>(edges.length * 2);
+			for(SysEdge e : edges) {
+				Pair<IElement> ends = graph.getEndpoints(e);
+				double a = positions.get(ends.getFirst()).getY(), b = positions.get(ends.getSecond()).getY();
+				spans.put(e, new double[] {Math.min(a, b), Math.max(a, b)});
+			}
+			Arrays.sort(edges, new Comparator<SysEdge>() {
+				public int compare(SysEdge a, SysEdge b) {
+					return Double.compare(spans.get(a)[0], spans.get(b)[0]);
+				}
+			});
+			edgeTop = new double[edges.length];
+			edgeBottom = new double[edges.length];
+			for(int i = 0; i < edges.length; i++) {
+				edgeTop[i] = spans.get(edges[i])[0];
+				edgeBottom[i] = spans.get(edges[i])[1];
+			}
+
+			server = new BasicVisualizationServer<IElement, SysEdge>(layout, new Dimension(width, height));
+			rc = server.getRenderContext();
+			rc.setScreenDevice(server);
+			SysUtils.applyTransformers(rc);
+			renderer = server.getRenderer();
+			renderer.getVertexLabelRenderer().setPosition(Position.AUTO);
+			//the labels follow the same rule as in the windows, see LevelOfDetail
+			labels = scale >= LevelOfDetail.LABEL_SCALE;
+			rc.getMultiLayerTransformer().getTransformer(Layer.VIEW).setScale(scale, scale, new Point2D.Double());
+		}
+
+		/**the part of the picture from the given row down, the bands must be drawn from the top*/
+		void draw(GraphicsDecorator g, int top, int rows) {
+			//the band, with the margin, in the coordinates of the layout
+			double margin = MARGIN / Math.min(scale, 1);
+			double from = minY + (top - MARGIN) / scale - margin;
+			double to = minY + (top + rows - MARGIN) / scale + margin;
+			prepare(g, top, rows);
+			while(nextEdge < edges.length && edgeTop[nextEdge] <= to) {
+				active.add(nextEdge++);
+			}
+			for(Iterator<Integer> i = active.iterator(); i.hasNext();) {
+				int e = i.next();
+				if(edgeBottom[e] < from) {
+					i.remove(); //above this band, and so above the next ones too
+				} else if(edgeTop[e] <= to) {
+					drawEdge(edges[e]);
+				}
+			}
+			int first = Arrays.binarySearch(vertexY, from);
+			for(int i = first < 0 ? -first - 1 : first; i > 0 && vertexY[i - 1] >= from; i--) {
+				first = i - 1; //the first of the vertices at the same y
+			}
+			for(int i = Math.max(first, 0); i < vertices.length && vertexY[i] <= to; i++) {
+				drawVertex(vertices[i]);
+			}
+		}
+
+		/**
+		 * the whole graph at once, into a graphics that keeps nothing
+		 * @return false if the progress stopped the export
+		 */
+		boolean drawAll(GraphicsDecorator g, Progress progress) {
+			prepare(g, 0, height);
+			int total = edges.length + vertices.length, done = 0;
+			for(SysEdge e : edges) {
+				drawEdge(e);
+				if(++done % 1000 == 0 && progress != null && !progress.progress(done, total)) return false;
+			}
+			for(IElement v : vertices) {
+				drawVertex(v);
+				if(++done % 1000 == 0 && progress != null && !progress.progress(done, total)) return false;
+			}
+			return progress == null || progress.progress(total, total);
+		}
+
+		private void prepare(GraphicsDecorator g, int top, int rows) {
+			server.setSize(width, rows); //the vertices out of the screen device are not drawn
+			//as in the viewers, the view transformer is applied by the graphics and only used by the renderers to find what is seen
+			g.setTransform(AffineTransform.getScaleInstance(scale, scale));
+			rc.setGraphicsContext(g);
+			MutableTransformer transformer = rc.getMultiLayerTransformer().getTransformer(Layer.LAYOUT);
+			transformer.setTranslate(MARGIN / scale - minX, (MARGIN - top) / scale - minY);
+		}
+
+		private void drawEdge(SysEdge e) {
+			renderer.renderEdge(rc, layout, e);
+			if(labels) renderer.renderEdgeLabel(rc, layout, e);
+		}
+
+		private void drawVertex(IElement v) {
+			renderer.renderVertex(rc, layout, v);
+			if(labels) renderer.renderVertexLabel(rc, layout, v);
+		}
+	}
+
+	/**
+	 * A graphics that writes the shapes and labels drawn by the renderers as SVG, in the order they are drawn.
+	 * What else is asked of it goes to a small image, e.g. the sizes of the fonts.
+	 */
+	private static class SvgGraphics extends GraphicsDecorator {
+		private final Writer out;
+		private final StringBuilder line = new StringBuilder();
+		private IOException error = null;
+
+		SvgGraphics(Writer out) {
+			super(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics());
+			this.out = out;
+		}
+
+		/**throws the first error writing the file*/
+		void check() throws IOException {
+			if(error != null) throw error;
+		}
+
+		public void draw(Shape s) {
+			line.setLength(0);
+			line.append("<path d=\"");
+			path(getTransform().createTransformedShape(s));
+			line.append("\" fill=\"none\"");
+			color("stroke", getPaint());
+			Stroke stroke = getStroke();
+			if(stroke instanceof BasicStroke) {
+				BasicStroke b = (BasicStroke)stroke;
+				line.append(" stroke-width=\"");
+				number(b.getLineWidth());
+				line.append('"');
+				float[] dash = b.getDashArray();
+				if(dash != null) {
+					line.append(" stroke-dasharray=\"");
+					for(int i = 0; i < dash.length; i++) {
+						if(i > 0) line.append(',');
+						number(dash[i]);
+					}
+					line.append('"');
+				}
+			}
+			write("/>\n");
+		}
+
+		public void fill(Shape s) {
+			line.setLength(0);
+			line.append("<path d=\"");
+			path(getTransform().createTransformedShape(s));
+			line.append('"');
+			color("fill", getPaint());
+			write("/>\n");
+		}
+
+		/**the renderers of JUNG draw the labels with a JLabel*/
+		public void draw(Component c, CellRendererPane rendererPane, int x, int y, int w, int h, boolean shouldValidate) {
+			if(!(c instanceof JLabel) || ((JLabel)c).getText() == null) {
+				return;
+			}
+			Font font = c.getFont();
+			int ascent = c.getFontMetrics(font).getAscent();
+			line.setLength(0);
+			line.append("<text x=\"").append(x).append("\" y=\"").append(y + (h - c.getFontMetrics(font).getHeight()) / 2 + ascent);
+			line.append("\" font-family=\"").append(escape(font.getFamily())).append("\" font-size=\"").append(font.getSize()).append('"');
+			if(font.isBold()) line.append(" font-weight=\"bold\"");
+			AffineTransform t = getTransform();
+			if(!t.isIdentity()) { //e.g. the labels of the edges, turned along them
+				double[] m = new double[6];
+				t.getMatrix(m);
+				line.append(" transform=\"matrix(");
+				points(m, 3);
+				line.append(")\"");
+			}
+			color("fill", c.getForeground());
+			line.append('>').append(escape(((JLabel)c).getText())).append("</text>");
+			write("\n");
+		}
+
+		private void write(String end) {
+			line.append(end);
+			try {
+				out.write(line.toString());
+			} catch(IOException e) {
+				if(error == null) error = e;
+			}
+		}
+
+		private void path(Shape s) {
+			double[] c = new double[6];
+			for(PathIterator i = s.getPathIterator(null); !i.isDone(); i.next()) {
+				switch(i.currentSegment(c)) {
+				case PathIterator.SEG_MOVETO:
+					line.append('M');
+					points(c, 1);
+					break;
+				case PathIterator.SEG_LINETO:
+					line.append('L');
+					points(c, 1);
+					break;
+				case PathIterator.SEG_QUADTO:
+					line.append('Q');
+					points(c, 2);
+					break;
+				case PathIterator.SEG_CUBICTO:
+					line.append('C');
+					points(c, 3);
+					break;
+				case PathIterator.SEG_CLOSE:
+					line.append('Z');
+					break;
+				}
+			}
+		}
+
+		private void points(double[] c, int n) {
+			for(int i = 0; i < n * 2; i++) {
+				if(i > 0) line.append(' ');
+				number(c[i]);
+			}
+		}
+
+		/**the number with a decimal at most*/
+		private void number(double d) {
+			long tenths = Math.round(d * 10);
+			if(tenths < 0) {
+				line.append('-');
+				tenths = -tenths;
+			}
+			line.append(tenths / 10);
+			if(tenths % 10 != 0) line.append('.').append(tenths % 10);
+		}
+
+		private void color(String attribute, Paint paint) {
+			Color color = paint instanceof Color ? (Color)paint : Color.BLACK;
+			line.append(' ').append(attribute).append("=\"#");
+			String rgb = Integer.toHexString(color.getRGB() & 0xffffff);
+			for(int i = rgb.length(); i < 6; i++) line.append('0');
+			line.append(rgb).append('"');
+			if(color.getAlpha() < 255) {
+				line.append(' ').append(attribute).append("-opacity=\"");
+				number(color.getAlpha() / 255.0);
+				line.append('"');
+			}
+		}
+
+		private static String escape(String s) {
+			return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+		}
+	}
+
+	/**
+	 * Writes a PNG a row at a time: 8 bits red, green and blue, every row filtered with the difference to the
+	 * pixel on its left and compressed into IDAT chunks as it comes.
+	 */
+	private static class PngWriter {
+		private static final int CHUNK = 1 << 16;
+		private final DataOutputStream out;
+		private final DeflaterOutputStream idat;
+		private final Deflater deflater = new Deflater(6);
+		private final byte[] row;
+
+		PngWriter(OutputStream file, int width, int height) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(file, CHUNK));
+			out.write(new byte[] {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream h = new DataOutputStream(header);
+			h.writeInt(width);
+			h.writeInt(height);
+			h.write(new byte[] {8, 2, 0, 0, 0}); //8 bits, RGB, deflate, filters, no interlace
+			chunk("IHDR", header.toByteArray(), header.size());
+			idat = new DeflaterOutputStream(new IdatStream(), deflater, CHUNK);
+			row = new byte[1 + width * 3];
+			row[0] = 1; //the Sub filter
+		}
+
+		void writeRow(int[] rgb) throws IOException {
+			int r = 0, g = 0, b = 0;
+			for(int x = 0, i = 1; x < rgb.length; x++) {
+				int p = rgb[x];
+				int pr = (p >> 16) & 0xff, pg = (p >> 8) & 0xff, pb = p & 0xff;
+				row[i++] = (byte)(pr - r);
+				row[i++] = (byte)(pg - g);
+				row[i++] = (byte)(pb - b);
+				r = pr;
+				g = pg;
+				b = pb;
+			}
+			idat.write(row);
+		}
+
+		void finish() throws IOException {
+			idat.finish();
+			chunk("IEND", new byte[0], 0);
+			out.flush();
+		}
+
+		void close() throws IOException {
+			deflater.end();
+			out.close();
+		}
+
+		private void chunk(String type, byte[] data, int length) throws IOException {
+			byte[] name = type.getBytes("US-ASCII");
+			CRC32 crc = new CRC32();
+			crc.update(name);
+			crc.update(data, 0, length);
+			out.writeInt(length);
+			out.write(name);
+			out.write(data, 0, length);
+			out.writeInt((int)crc.getValue());
+		}
+
+		/**the compressed rows, written as IDAT chunks*/
+		private class IdatStream extends OutputStream {
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte)b}, 0, 1);
+			}
+
+			public void write(byte[] b, int off, int len) throws IOException {
+				while(len > 0) {
+					int n = Math.min(len, CHUNK);
+					chunk("IDAT", Arrays.copyOfRange(b, off, off + n), n);
+					off += n;
+					len -= n;
+				}
+			}
+		}
+	}
+
+}
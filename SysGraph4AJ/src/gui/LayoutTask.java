@@ -0,0 +1,107 @@
+package gui;
+
+import java.awt.Dimension;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingWorker;
+
+/**
+ * The layout of a graph, computed on a background thread so the window keeps painting and answering while a
+ * large graph is laid out. The layout works on a graph of its own or on a snapshot of the graph shown, taken
+ * before the task is submitted, because the graph shown can change meanwhile. It is applied to the window on
+ * the event dispatch thread.
+ * <br>
+ * A window has one layout in progress at most: submitting a layout for a window cancels the one submitted
+ * before, which never starts if it is still queued and whose result is dropped otherwise. Cancelling a running
+ * layout interrupts the layout thread; {@link visualization.ParallelTreeLayout}, {@link visualization.LayeredLayout}
+ * and {@link visualization.BarnesHutLayout} check the interrupt and stop early, so the next layout does not
+ * wait for them.
+ */
+public abstract class LayoutTask<L> extends SwingWorker<L, Object> {
+
+	private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "SysGraph4AJ layout");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**the last layout submitted for every window, only used on the event dispatch thread*/
+	private static final Map<GUIWindowInterface, LayoutTask<?>> latest = new WeakHashMap<GUIWindowInterface, LayoutTask<?>>();
+	/**the time the last layout applied took for every window, in nanoseconds, only used on the event dispatch thread*/
+	private static final Map<GUIWindowInterface, Long> took = new WeakHashMap<GUIWindowInterface, Long>();
+
+	private final GUIWindowInterface window;
+	private volatile long elapsed = 0;
+
+	public LayoutTask(GUIWindowInterface window) {
+		this.window = window;
+	}
+
+	/**runs on the layout thread and must not touch the graph shown, only its own graph or a snapshot*/
+	protected abstract L layout() throws Exception;
+
+	/**runs on the event dispatch thread with the result of {@link #layout()}, unless a newer layout was submitted*/
+	protected abstract void apply(L layout);
+
+	/**queues the task and cancels the previous layout of the window. Must be called on the event dispatch thread.*/
+	public void submit() {
+		LayoutTask<?> previous = latest.put(window, this);
+		if(previous != null) {
+			previous.cancel(true);
+		}
+		EXECUTOR.execute(this);
+	}
+
+	protected final L doInBackground() throws Exception {
+		long start = System.nanoTime();
+		L layout = layout();
+		elapsed = System.nanoTime() - start;
+		return layout;
+	}
+
+	/**@return the time the last layout applied to the window took, in milliseconds, -1 if none was*/
+	public static double getLastLayoutMillis(GUIWindowInterface window) {
+		Long nanos = took.get(window);
+		return nanos == null ? -1 : nanos / 1000000.0d;
+	}
+
+	protected final void done() {
+		if(latest.get(window) == this) {
+			latest.remove(window);
+		}
+		if(isCancelled()) {
+			return;
+		}
+		try {
+			L layout = get();
+			took.put(window, elapsed);
+			apply(layout);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(CancellationException e) {
+			//superseded by a newer layout
+		} catch(ExecutionException e) {
+			window.getTextArea().append("Could not lay out the graph: " + e.getCause() + "\n");
+			e.getCause().printStackTrace();
+		}
+	}
+
+	/**@return the panel shown instead of the graph while its first layout is computed*/
+	public static JComponent placeholder(String what) {
+		JLabel label = new JLabel("Laying out " + what + "...", SwingConstants.CENTER);
+		label.setPreferredSize(new Dimension(600, 600));
+		return label;
+	}
+
+}
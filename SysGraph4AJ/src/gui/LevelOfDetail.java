@@ -0,0 +1,170 @@
+package gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.collections15.Predicate;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Context;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
+import edu.uci.ics.jung.visualization.RenderContext;
+import edu.uci.ics.jung.visualization.VisualizationServer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.renderers.BasicEdgeLabelRenderer;
+import edu.uci.ics.jung.visualization.renderers.BasicVertexLabelRenderer;
+import edu.uci.ics.jung.visualization.renderers.BasicVertexRenderer;
+import edu.uci.ics.jung.visualization.renderers.Renderer;
+
+/**
+ * Draws only what can be seen, so a large graph can be panned and zoomed. Before every repaint it computes
+ * the part of the layout in the window and the zoom, then:
+ * <ul>
+ * <li>the vertices out of the window and the edges that do not cross it are not drawn;</li>
+ * <li>the labels of the vertices and of the edges are not drawn when the graph is zoomed out so far that
+ * they could not be read;</li>
+ * <li>when the graph is zoomed out further, the vertices that fall on the same few pixels are drawn as a
+ * single one, with the edges between such groups only.</li>
+ * </ul>
+ * The vertices that are not drawn can not be picked either. Install it with {@link #install(VisualizationViewer)}.
+ */
+public class LevelOfDetail<V, E> implements VisualizationServer.Paintable {
+
+	/**labels are hidden below this zoom*/
+	public static final double LABEL_SCALE = 0.5;
+	/**vertices are grouped below this zoom*/
+	public static final double GROUP_SCALE = 0.2;
+	/**the side of the square of the screen, in pixels, where vertices are grouped*/
+	private static final int CELL = 12;
+	/**what is this many pixels out of the window is still drawn, for the shapes and labels that reach into it*/
+	private static final int MARGIN = 60;
+
+	private final VisualizationViewer<V, E> vv;
+	/**the part of the layout in the window, with the margin, in layout coordinates*/
+	private Rectangle2D viewport = null;
+	private double scale = 1;
+	/**the vertex drawn for every group of the last repaint*/
+	private final Map<Long, V> groups = new HashMap<Long, V>();
+	/**the positions read in the last repaint, the layout gives a new copy of a position at every call*/
+	private final Map<V, Point2D> positions = new HashMap<V, Point2D>();
+
+	private LevelOfDetail(VisualizationViewer<V, E> vv) {
+		this.vv = vv;
+	}
+
+	/**puts the level of detail in the renderer of the viewer, once*/
+	public static <V, E> void install(VisualizationViewer<V, E> vv) {
+		Renderer<V, E> renderer = vv.getRenderer();
+		if(renderer.getVertexRenderer() instanceof LevelOfDetail.VertexRenderer) {
+			return;
+		}
+		final LevelOfDetail<V, E> lod = new LevelOfDetail<V, E>(vv);
+		vv.addPreRenderPaintable(lod);
+		renderer.setVertexRenderer(lod.new VertexRenderer());
+		renderer.setVertexLabelRenderer(lod.new VertexLabelRenderer());
+		renderer.setEdgeLabelRenderer(lod.new EdgeLabelRenderer());
+		RenderContext<V, E> rc = vv.getRenderContext();
+		rc.setVertexIncludePredicate(new Predicate<Context<Graph<V, E>, V>>() {
+			public boolean evaluate(Context<Graph<V, E>, V> context) {
+				return lod.isGroupShown(context.element);
+			}
+		});
+		rc.setEdgeIncludePredicate(new Predicate<Context<Graph<V, E>, E>>() {
+			public boolean evaluate(Context<Graph<V, E>, E> context) {
+				return lod.isEdgeShown(context.graph, context.element);
+			}
+		});
+	}
+
+	/**takes the window and the zoom of the repaint that starts*/
+	public void paint(Graphics g) {
+		MultiLayerTransformer transformer = vv.getRenderContext().getMultiLayerTransformer();
+		scale = transformer.getTransformer(Layer.VIEW).getScale() * transformer.getTransformer(Layer.LAYOUT).getScale();
+		Dimension size = vv.getSize();
+		Rectangle window = new Rectangle(-MARGIN, -MARGIN, size.width + 2 * MARGIN, size.height + 2 * MARGIN);
+		viewport = transformer.inverseTransform(window).getBounds2D();
+		groups.clear();
+		positions.clear();
+	}
+
+	public boolean useTransform() {
+		return false;
+	}
+
+	/**@return the zoom of the last repaint*/
+	public double getScale() {
+		return scale;
+	}
+
+	private Point2D position(V v) {
+		Point2D p = positions.get(v);
+		if(p == null) {
+			p = vv.getGraphLayout().transform(v);
+			positions.put(v, p);
+		}
+		return p;
+	}
+
+	private boolean isVisible(V v) {
+		return viewport == null || viewport.contains(position(v));
+	}
+
+	/**@return false for the vertices drawn by another vertex of their group*/
+	private boolean isGroupShown(V v) {
+		if(viewport == null || scale >= GROUP_SCALE) {
+			return true;
+		}
+		Point2D p = position(v);
+		long cell = ((long)Math.floor(p.getX() * scale / CELL) << 32) ^ ((long)Math.floor(p.getY() * scale / CELL) & 0xffffffffL);
+		V shown = groups.get(cell);
+		if(shown == null) {
+			groups.put(cell, v);
+			return true;
+		}
+		return shown.equals(v);
+	}
+
+	/**@return false for the edges whose bounding box is out of the window*/
+	private boolean isEdgeShown(Graph<V, E> graph, E e) {
+		if(viewport == null) {
+			return true;
+		}
+		Pair<V> ends = graph.getEndpoints(e);
+		Point2D a = position(ends.getFirst()), b = position(ends.getSecond());
+		double x = Math.min(a.getX(), b.getX()), y = Math.min(a.getY(), b.getY());
+		return viewport.intersects(x, y, Math.abs(a.getX() - b.getX()) + 1, Math.abs(a.getY() - b.getY()) + 1);
+	}
+
+	private class VertexRenderer extends BasicVertexRenderer<V, E> {
+		public void paintVertex(RenderContext<V, E> rc, Layout<V, E> layout, V v) {
+			if(isVisible(v)) {
+				super.paintVertex(rc, layout, v);
+			}
+		}
+	}
+
+	private class VertexLabelRenderer extends BasicVertexLabelRenderer<V, E> {
+		public void labelVertex(RenderContext<V, E> rc, Layout<V, E> layout, V v, String label) {
+			if(scale >= LABEL_SCALE && isVisible(v)) {
+				super.labelVertex(rc, layout, v, label);
+			}
+		}
+	}
+
+	private class EdgeLabelRenderer extends BasicEdgeLabelRenderer<V, E> {
+		public void labelEdge(RenderContext<V, E> rc, Layout<V, E> layout, E e, String label) {
+			if(scale >= LABEL_SCALE) {
+				super.labelEdge(rc, layout, e, label);
+			}
+		}
+	}
+
+}
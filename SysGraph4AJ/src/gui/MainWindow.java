@@ -6,14 +6,18 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
 import javax.swing.BoxLayout;
+import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -22,6 +26,7 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.UIManager;
@@ -30,7 +35,11 @@ import model.IElement;
 import model.SysElement;
 import model.SysPackage;
 import model.SysRoot;
+import visualization.CallChainCache;
+import visualization.LayoutKind;
+import visualization.SysEdge;
 import analysis.SysAnalysis;
+import cfg.gui.CFGModelToGraph;
 import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
 import edu.uci.ics.jung.algorithms.layout.TreeLayout;
 import edu.uci.ics.jung.graph.DelegateTree;
@@ -41,15 +50,13 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 
 	private static MainWindow self = null;
 	private static boolean window = false;
-	private static VisualizationViewer<SysElement, Float> visualizationViewer = null;
+	private static VisualizationViewer<SysElement, SysEdge> visualizationViewer = null;
 	private static boolean isVisualizationViewerEnabled = false;
 	private String path = "bin";
 	private JTextArea textArea = new JTextArea();
 	private Container center;
 	private SysRoot sysRoot = new SysRoot();
 	private JPanel leftPanel = new JPanel();
-	private int deltaX = 100;
-	private int deltaY = 80;
 
 	/**
 	 * Constructs a new window (SingleTon Instance)
@@ -58,6 +65,11 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 		
 		super(name);
 		this.setDefaultCloseOperation(EXIT_ON_CLOSE);
+		this.addWindowListener(new WindowAdapter() {
+			public void windowClosing(WindowEvent e) {
+				CFGModelToGraph.savePositions(sysRoot, MainWindow.this);
+			}
+		});
 		this.setVisible(false);
 		
 		//take a good visual for textArea :)
@@ -127,6 +139,44 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 		return menu;
 	}
 	
+	/**makes the menu that chooses how the graph is laid out when an element is expanded*/
+	public JMenu makeLayoutMenu() {
+		JMenuBar bar = this.getJMenuBar();
+		JMenu menu = new JMenu();
+		menu.setText("Layout");
+		menu.setIcon(null);
+		menu.setPreferredSize(new Dimension(60,20));
+		final JCheckBoxMenuItem keep = new JCheckBoxMenuItem("Keep positions on expansion", CFGModelToGraph.isKeepPositions());
+		keep.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				CFGModelToGraph.setKeepPositions(keep.isSelected());
+			}
+		});
+		menu.add(keep);
+		JMenuItem again = new JMenuItem("Lay out again");
+		again.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				CFGModelToGraph.layOutAgain(MainWindow.this, sysRoot);
+			}
+		});
+		menu.add(again);
+		menu.addSeparator();
+		ButtonGroup kinds = new ButtonGroup();
+		for(final LayoutKind kind : LayoutKind.values()) {
+			JRadioButtonMenuItem item = new JRadioButtonMenuItem(kind.toString(), kind == CFGModelToGraph.getLayoutKind());
+			item.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					CFGModelToGraph.setLayoutKind(kind);
+					CFGModelToGraph.layOutAgain(MainWindow.this, sysRoot);
+				}
+			});
+			kinds.add(item);
+			menu.add(item);
+		}
+		bar.add(menu);
+		return menu;
+	}
+
 	private final class JUnitActionListener implements ActionListener {
 		public void actionPerformed(ActionEvent e) {
 			JUnitDialog j = new JUnitDialog(MainWindow.this);
@@ -231,7 +281,8 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 	}
 
 	/**
-	 * Makes an initial and special analysis given the path
+	 * Makes an initial and special analysis given the path. The analysis runs in background, the graph is
+	 * shown when it is done.
 	 * */
 	public void analyse() {
 		if(this.path == null) {
@@ -239,17 +290,39 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 		}
 		else {
 			this.textArea.append("Beginning analysis\n");
-			SysRoot root = SysAnalysis.initialModel(this.path); // do the initial model
-			this.sysRoot = root;
-			VisualizationViewer<IElement, Object> visualizationViewer 
-				= SysUtils.createVisualizationViewerBySysRoot(root, this.deltaX, this.deltaY);
-			this.setCenterPanel(visualizationViewer);
-			visualizationViewer.updateUI();
-			this.textArea.append(root.getPackages().toString() + "\n");
-			this.makeGoodVisual(visualizationViewer);
+			final String path = this.path;
+			new AnalysisTask<SysRoot>(this, "analysing " + path) {
+				protected SysRoot analyse() {
+					progress(0, 1, path);
+					return SysAnalysis.initialModel(path); // do the initial model
+				}
+
+				protected void apply(SysRoot root) {
+					if(root == null) {
+						textArea.append("Can't read \"" + path + "\"\n");
+						return;
+					}
+					CFGModelToGraph.savePositions(sysRoot, MainWindow.this);
+					sysRoot = root;
+					CallChainCache.clear(); //the call chains of the previous project
+					textArea.append(root.getPackages().toString() + "\n");
+					show(root, path);
+				}
+			}.submit();
 		}
 	}
 
+	/**
+	 * shows the graph of the given root with the positions saved when the project was last closed, or laid out
+	 * in background when there are none. A placeholder is shown meanwhile.
+	 */
+	private void show(final SysRoot root, String path) {
+		setCenterPanel(LayoutTask.placeholder(path));
+		validate();
+		CFGModelToGraph.showMainGraph(root, this);
+		validate();
+	}
+
 	/**
 	 * Listener responsável por analisar o pacote escolhido.
 	 * 
@@ -296,25 +369,31 @@ public class MainWindow extends JFrame implements GUIWindowInterface {
 		container.add(pane, BorderLayout.CENTER);
 		this.setCenter(pane);
 		if(pane instanceof VisualizationViewer){
-			VisualizationViewer<IElement, Object> visualizationViewer = ((VisualizationViewer<IElement,Object>) pane);
+			VisualizationViewer<IElement, SysEdge> visualizationViewer = ((VisualizationViewer<IElement, SysEdge>) pane);
 			this.makeGoodVisual(visualizationViewer);
 			visualizationViewer.updateUI();
 		}
 	}
 
-	public void makeGoodVisual(VisualizationViewer<IElement, Object> visualizationViewer){
+	public void makeGoodVisual(VisualizationViewer<IElement, SysEdge> visualizationViewer){
 		SysUtils.makeGoodVisual(visualizationViewer, this);
 	}
 
-	public void makeMenuBar(VisualizationViewer<IElement, Object> visualizationViewer){
+	public void makeMenuBar(VisualizationViewer<IElement, SysEdge> visualizationViewer){
 		SysUtils.makeMenuBar(visualizationViewer, this, this.sysRoot);
 		this.makeJUnitMenu();
+		this.makeLayoutMenu();
 	}
 
 	public boolean rightClickEnabled() {
 		return true;
 	}
 
+	/**@return the root of the project shown, it changes when another project is analysed*/
+	public SysRoot getSysRoot() {
+		return this.sysRoot;
+	}
+
 	public JFrame getFrame() {
 		return this;
 	}
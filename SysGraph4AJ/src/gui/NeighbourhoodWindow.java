@@ -0,0 +1,139 @@
+package gui;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.JTextArea;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import model.IElement;
+import model.SysElement;
+import model.SysRoot;
+import visualization.BarnesHutLayout;
+import visualization.Neighbourhood;
+import visualization.SysEdge;
+import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+
+/**
+ * Shows the neighbourhood of an element: the elements at most k steps away from it through containment, calls,
+ * callers and advice, see {@link Neighbourhood}. Unlike the {@link CallChainWindow}, which only follows the
+ * calls a method makes, it shows who calls the element too. The slider changes k; the index of the model is
+ * kept, so only the neighbourhood is computed and laid out again.
+ */
+public class NeighbourhoodWindow extends JFrame implements GUIWindowInterface {
+
+	private static final long serialVersionUID = 1L;
+
+	/**the steps shown when the window opens*/
+	public static final int DEFAULT_HOPS = 2;
+
+	private final SysRoot root;
+	private final SysElement element;
+	private int hops = DEFAULT_HOPS;
+	/**the index of the model, built again by {@link #reload()}. Only used on the event dispatch thread.*/
+	private Neighbourhood neighbourhood = null;
+	private final JPanel panel = new JPanel(new BorderLayout());
+	private Container center;
+	private JTextArea textArea = new JTextArea();
+
+	/**
+	 * @param element the element in the middle of the neighbourhood
+	 * @param root the SysRoot the element is in
+	 */
+	public NeighbourhoodWindow(SysElement element, SysRoot root) {
+		super("Neighbourhood >>> " + element);
+		this.element = element;
+		this.root = root;
+		final JSlider slider = new JSlider(0, 6, DEFAULT_HOPS);
+		slider.setMajorTickSpacing(1);
+		slider.setSnapToTicks(true);
+		slider.setPaintTicks(true);
+		slider.setPaintLabels(true);
+		slider.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if(slider.getValue() != hops) {
+					hops = slider.getValue();
+					showNeighbourhood(false);
+				}
+			}
+		});
+		this.panel.add(slider, BorderLayout.NORTH);
+		this.center = LayoutTask.placeholder("the neighbourhood of " + element.getName());
+		this.panel.add(this.center, BorderLayout.CENTER);
+		this.setContentPane(this.panel);
+		this.pack();
+		reload();
+	}
+
+	/**indexes the model again, e.g. after an analysis, and shows the neighbourhood*/
+	public void reload() {
+		showNeighbourhood(true);
+	}
+
+	/**computes and lays out the neighbourhood in background, indexing the model first if index is true*/
+	private void showNeighbourhood(boolean index) {
+		final int hops = this.hops;
+		final Neighbourhood known = index ? null : this.neighbourhood;
+		new LayoutTask<AggregateLayout<IElement, SysEdge>>(this) {
+			private Neighbourhood built;
+
+			protected AggregateLayout<IElement, SysEdge> layout() {
+				built = known != null ? known : new Neighbourhood(root);
+				Graph<IElement, SysEdge> graph = built.around(element, hops);
+				return new AggregateLayout<IElement, SysEdge>(BarnesHutLayout.layout(graph, null, 100));
+			}
+
+			protected void apply(AggregateLayout<IElement, SysEdge> al) {
+				neighbourhood = built;
+				VisualizationViewer<IElement, SysEdge> vv = new VisualizationViewer<IElement, SysEdge>(al);
+				setCenterPanel(vv);
+				makeGoodVisual(vv);
+				vv.getPickedVertexState().pick(element, true);
+				validate();
+				SysUtils.setAtCenter(element, al, NeighbourhoodWindow.this, vv);
+				repaint();
+			}
+		}.submit();
+	}
+
+	public Container getCenter() {
+		return this.center;
+	}
+
+	public void setCenter(Container c) {
+		this.panel.remove(this.center);
+		this.panel.add(c, BorderLayout.CENTER);
+		this.center = c;
+	}
+
+	public JTextArea getTextArea() {
+		return this.textArea;
+	}
+
+	public void setCenterPanel(Container pane) {
+		this.setCenter(pane);
+	}
+
+	public void makeGoodVisual(VisualizationViewer<IElement, SysEdge> vv) {
+		SysUtils.makeGoodVisual(vv, this);
+	}
+
+	public void makeMenuBar(VisualizationViewer<IElement, SysEdge> vv) {
+		SysUtils.makeMenuBar(vv, this, this.root);
+	}
+
+	public boolean rightClickEnabled() {
+		return true;
+	}
+
+	public JFrame getFrame() {
+		return this;
+	}
+
+}
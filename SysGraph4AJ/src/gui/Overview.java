@@ -0,0 +1,299 @@
+package gui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import model.IElement;
+import visualization.SysEdge;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.transform.MutableTransformer;
+
+/**
+ * A small picture of the whole graph of a window, with the part shown in the window drawn over it, to find
+ * the way in a large graph without zooming out and in again. A click in the picture, or the end of a drag,
+ * brings that part of the graph to the middle of the window.
+ * <br>
+ * The picture is drawn once, in an image of low resolution, and drawn again only after the layout changes,
+ * at most a few times a second. Panning or zooming the window only moves the rectangle over the image, and
+ * dragging in the picture moves the rectangle alone: the window is repainted once, when the mouse is released.
+ * <br>
+ * Every window has one overview at most, in a small window of its own, see {@link #show(VisualizationViewer, JFrame)};
+ * it follows the viewer the window shows, see {@link #follow(VisualizationViewer, JFrame)}. Only used on the
+ * event dispatch thread.
+ */
+public class Overview extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	/**the longest side of the picture, in pixels, when it opens*/
+	private static final int SIDE = 220;
+	/**the blank around the graph in the picture, in pixels*/
+	private static final int BORDER = 6;
+	/**the least time between two drawings of the image, in milliseconds*/
+	private static final int REFRESH_DELAY = 250;
+	private static final Color EDGE_COLOR = new Color(0, 0, 0, 60);
+	private static final Color VIEWPORT_COLOR = new Color(255, 0, 0);
+	private static final Color VIEWPORT_FILL = new Color(255, 0, 0, 30);
+
+	private static final SysTransformers TRANSFORMERS = new SysTransformers();
+
+	private VisualizationViewer<IElement, SysEdge> vv = null;
+	/**the picture of the graph, null when it must be drawn again*/
+	private BufferedImage image = null;
+	/**from the layout to the picture, when the image was drawn*/
+	private AffineTransform toImage = new AffineTransform();
+	/**the middle of the rectangle while it is dragged, null otherwise*/
+	private Point dragged = null;
+
+	private final Timer refresh;
+	/**the layout moved: the image is drawn again, later*/
+	private final ChangeListener layoutListener = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			invalidateImage();
+		}
+	};
+	/**the window was panned or zoomed: only the rectangle moves*/
+	private final ChangeListener viewListener = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			repaint();
+		}
+	};
+	private final ComponentAdapter resizeListener = new ComponentAdapter() {
+		public void componentResized(ComponentEvent e) {
+			repaint();
+		}
+	};
+
+	private Overview() {
+		setPreferredSize(new Dimension(SIDE, SIDE * 3 / 4));
+		setOpaque(true);
+		refresh = new Timer(REFRESH_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				image = null;
+				repaint();
+			}
+		});
+		refresh.setRepeats(false);
+		addComponentListener(new ComponentAdapter() {
+			public void componentResized(ComponentEvent e) {
+				image = null;
+				repaint();
+			}
+		});
+		MouseAdapter mouse = new MouseAdapter() {
+			public void mousePressed(MouseEvent e) {
+				dragged = e.getPoint();
+				repaint();
+			}
+
+			public void mouseDragged(MouseEvent e) {
+				dragged = e.getPoint();
+				repaint();
+			}
+
+			public void mouseReleased(MouseEvent e) {
+				dragged = null;
+				jumpTo(e.getPoint());
+			}
+		};
+		addMouseListener(mouse);
+		addMouseMotionListener(mouse);
+	}
+
+	/**opens the overview of the window, or brings it to front, showing the given viewer*/
+	public static void show(VisualizationViewer<IElement, SysEdge> vv, final JFrame frame) {
+		Overview overview = of(frame);
+		if(overview == null) {
+			overview = new Overview();
+			//kept by the window, so it goes away with it
+			frame.getRootPane().putClientProperty(Overview.class, overview);
+			JDialog dialog = new JDialog(frame, "Overview");
+			dialog.setFocusableWindowState(false);
+			dialog.setContentPane(overview);
+			dialog.pack();
+			dialog.setLocation(frame.getX() + frame.getWidth() - dialog.getWidth() - 20, frame.getY() + 60);
+			final Overview closed = overview;
+			dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+			dialog.addWindowListener(new WindowAdapter() {
+				public void windowClosing(WindowEvent e) {
+					closed.setViewer(null);
+					frame.getRootPane().putClientProperty(Overview.class, null);
+				}
+			});
+		}
+		overview.setViewer(vv);
+		overview.getTopLevelAncestor().setVisible(true);
+	}
+
+	/**makes the overview of the window, if it has one open, show the given viewer, e.g. after the window reloads its graph*/
+	public static void follow(VisualizationViewer<IElement, SysEdge> vv, JFrame frame) {
+		Overview overview = of(frame);
+		if(overview != null) {
+			overview.setViewer(vv);
+		}
+	}
+
+	/**@return the overview the window opened, null if it has none*/
+	private static Overview of(JFrame frame) {
+		return (Overview)frame.getRootPane().getClientProperty(Overview.class);
+	}
+
+	private void setViewer(VisualizationViewer<IElement, SysEdge> viewer) {
+		if(viewer == vv) {
+			return;
+		}
+		if(vv != null) {
+			vv.getModel().removeChangeListener(layoutListener);
+			vv.getRenderContext().getMultiLayerTransformer().removeChangeListener(viewListener);
+			vv.removeComponentListener(resizeListener);
+		}
+		vv = viewer;
+		if(vv != null) {
+			vv.getModel().addChangeListener(layoutListener);
+			vv.getRenderContext().getMultiLayerTransformer().addChangeListener(viewListener);
+			vv.addComponentListener(resizeListener);
+		}
+		refresh.stop();
+		image = null;
+		repaint();
+	}
+
+	private void invalidateImage() {
+		if(!refresh.isRunning()) {
+			refresh.start();
+		}
+	}
+
+	protected void paintComponent(Graphics g) {
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		if(vv == null || getWidth() <= 2 * BORDER || getHeight() <= 2 * BORDER) {
+			return;
+		}
+		if(image == null) {
+			drawImage();
+		}
+		g.drawImage(image, 0, 0, null);
+		Shape viewport = viewport();
+		if(viewport == null) {
+			return;
+		}
+		Graphics2D g2d = (Graphics2D)g;
+		if(dragged != null) {
+			Rectangle2D bounds = viewport.getBounds2D();
+			g2d.translate(dragged.getX() - bounds.getCenterX(), dragged.getY() - bounds.getCenterY());
+		}
+		g2d.setColor(VIEWPORT_FILL);
+		g2d.fill(viewport);
+		g2d.setColor(VIEWPORT_COLOR);
+		g2d.draw(viewport);
+	}
+
+	/**draws the vertices and edges of the layout in a new image, fitted to the size of the overview*/
+	private void drawImage() {
+		Layout<IElement, SysEdge> layout = vv.getGraphLayout();
+		//the layout gives a new copy of a position at every call
+		Map<IElement, Point2D> positions = new HashMap<IElement, Point2D>(layout.getGraph().getVertexCount() * 2);
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for(IElement v : layout.getGraph().getVertices()) {
+			Point2D p = layout.transform(v);
+			positions.put(v, p);
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		toImage = new AffineTransform();
+		if(positions.isEmpty()) {
+			g.dispose();
+			return;
+		}
+		double scale = Math.min((getWidth() - 2 * BORDER) / Math.max(maxX - minX, 1), (getHeight() - 2 * BORDER) / Math.max(maxY - minY, 1));
+		toImage.translate((getWidth() - (maxX - minX) * scale) / 2, (getHeight() - (maxY - minY) * scale) / 2);
+		toImage.scale(scale, scale);
+		toImage.translate(-minX, -minY);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setStroke(new BasicStroke(1));
+		g.setColor(EDGE_COLOR);
+		Point2D a = new Point2D.Double(), b = new Point2D.Double();
+		for(SysEdge e : layout.getGraph().getEdges()) {
+			Pair<IElement> ends = layout.getGraph().getEndpoints(e);
+			toImage.transform(positions.get(ends.getFirst()), a);
+			toImage.transform(positions.get(ends.getSecond()), b);
+			g.drawLine((int)a.getX(), (int)a.getY(), (int)b.getX(), (int)b.getY());
+		}
+		for(Map.Entry<IElement, Point2D> entry : positions.entrySet()) {
+			Paint paint = TRANSFORMERS.getVertexPaint().transform(entry.getKey());
+			g.setPaint(paint != null ? paint : Color.GRAY);
+			toImage.transform(entry.getValue(), a);
+			g.fillRect((int)a.getX() - 1, (int)a.getY() - 1, 3, 3);
+		}
+		g.dispose();
+	}
+
+	/**@return the part of the layout shown in the window, in the picture, null if the window has no size*/
+	private Shape viewport() {
+		if(vv.getWidth() <= 0 || vv.getHeight() <= 0) {
+			return null;
+		}
+		MultiLayerTransformer transformer = vv.getRenderContext().getMultiLayerTransformer();
+		Shape shown = transformer.inverseTransform(new Rectangle2D.Double(0, 0, vv.getWidth(), vv.getHeight()));
+		return toImage.createTransformedShape(shown);
+	}
+
+	/**pans the window so the point of the picture is in the middle of it*/
+	private void jumpTo(Point point) {
+		if(vv == null) {
+			return;
+		}
+		Point2D target;
+		try {
+			target = toImage.inverseTransform(point, null);
+		} catch(NoninvertibleTransformException e) {
+			return;
+		}
+		MultiLayerTransformer transformer = vv.getRenderContext().getMultiLayerTransformer();
+		Point2D middle = transformer.inverseTransform(new Point2D.Double(vv.getWidth() / 2.0, vv.getHeight() / 2.0));
+		MutableTransformer layout = transformer.getTransformer(Layer.LAYOUT);
+		layout.translate(middle.getX() - target.getX(), middle.getY() - target.getY());
+		repaint();
+	}
+
+}
@@ -0,0 +1,172 @@
+package gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import model.IElement;
+import visualization.SysEdge;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.visualization.VisualizationServer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+
+/**
+ * Shows over the graph of a window what it costs: the vertices and edges of the graph, the time its last
+ * layout took (see {@link LayoutTask}), the time the last repaint of the graph took, the analyses waiting
+ * (see {@link AnalysisTask} and {@link UpdateScheduler}) and the memory used, to find out which interaction
+ * makes the tool slow on a given project.
+ * <br>
+ * Every viewer times its whole repaints, from a paintable before the graph to one after it; the repaints of
+ * a part of the viewer, e.g. under a tool tip, are not timed. The figures are drawn in a small opaque
+ * component over the viewer, refreshed every second on its own, so refreshing them does not draw the graph
+ * again. They are only shown while {@link #setShown(boolean)}, which is the same for every window, from the
+ * next repaint of the window. Install it with {@link #install(VisualizationViewer, GUIWindowInterface)}.
+ * Only used on the event dispatch thread.
+ */
+public class PerformanceOverlay extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+
+	/**the time between two refreshes of the figures, in milliseconds*/
+	private static final int REFRESH_MILLIS = 1000;
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+	private static final Color BACKGROUND = new Color(255, 255, 224);
+	private static final int PADDING = 4;
+
+	private static boolean shown = false;
+
+	private final VisualizationViewer<IElement, SysEdge> vv;
+	private final GUIWindowInterface window;
+	/**when the repaint being timed started, -1 if it is not timed*/
+	private long repaintStart = -1;
+	/**the time the last whole repaint of the graph took, in nanoseconds, -1 before the first one*/
+	private long repaintTook = -1;
+	private String[] lines = new String[0];
+	private final Timer timer;
+
+	private PerformanceOverlay(VisualizationViewer<IElement, SysEdge> vv, GUIWindowInterface window) {
+		this.vv = vv;
+		this.window = window;
+		//painted alone when refreshed, without the graph below
+		setOpaque(true);
+		setVisible(false);
+		this.timer = new Timer(REFRESH_MILLIS, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				refresh();
+			}
+		});
+	}
+
+	/**times the repaints of the viewer and shows the figures over it while the overlay is shown, once for every viewer*/
+	public static void install(VisualizationViewer<IElement, SysEdge> vv, GUIWindowInterface window) {
+		if(vv.getClientProperty(PerformanceOverlay.class) != null) {
+			return;
+		}
+		final PerformanceOverlay overlay = new PerformanceOverlay(vv, window);
+		vv.putClientProperty(PerformanceOverlay.class, overlay);
+		vv.setLayout(null);
+		vv.add(overlay);
+		vv.addPreRenderPaintable(new VisualizationServer.Paintable() {
+			public void paint(Graphics g) {
+				overlay.startRepaint(g);
+			}
+
+			public boolean useTransform() {
+				return false;
+			}
+		});
+		vv.addPostRenderPaintable(new VisualizationServer.Paintable() {
+			public void paint(Graphics g) {
+				overlay.endRepaint();
+			}
+
+			public boolean useTransform() {
+				return false;
+			}
+		});
+	}
+
+	public static boolean isShown() {
+		return shown;
+	}
+
+	/**shows or hides the overlay in every window, from their next repaint*/
+	public static void setShown(boolean show) {
+		shown = show;
+	}
+
+	/**times the repaint only if it draws the whole viewer*/
+	private void startRepaint(Graphics g) {
+		Rectangle clip = g.getClipBounds();
+		repaintStart = clip == null || clip.contains(0, 0, vv.getWidth(), vv.getHeight()) ? System.nanoTime() : -1;
+	}
+
+	private void endRepaint() {
+		if(repaintStart >= 0) {
+			repaintTook = System.nanoTime() - repaintStart;
+		}
+		if(shown != isVisible()) {
+			setVisible(shown);
+		}
+		if(shown) {
+			update();
+			if(!timer.isRunning()) {
+				timer.start();
+			}
+		}
+	}
+
+	/**refreshes the figures, and stops once the overlay is hidden or the viewer closed*/
+	private void refresh() {
+		if(!shown || !vv.isShowing()) {
+			timer.stop();
+			return;
+		}
+		update();
+		repaint();
+	}
+
+	/**computes the figures and fits the component to them*/
+	private void update() {
+		Graph<IElement, SysEdge> graph = vv.getGraphLayout().getGraph();
+		double layout = LayoutTask.getLastLayoutMillis(window);
+		Runtime runtime = Runtime.getRuntime();
+		long used = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+		lines = new String[] {
+				"vertices " + graph.getVertexCount() + "  edges " + graph.getEdgeCount(),
+				"layout   " + (layout < 0 ? "-" : String.format("%.1f ms", layout)),
+				"repaint  " + (repaintTook < 0 ? "-" : String.format("%.1f ms", repaintTook / 1000000.0d)),
+				"analyses " + AnalysisTask.getPending() + " tasks, " + UpdateScheduler.getPendingAnalyses(window) + " in this window",
+				"heap     " + used + " / " + (runtime.maxMemory() >> 20) + " MB"
+		};
+		FontMetrics metrics = getFontMetrics(FONT);
+		int w = 0;
+		for(String line : lines) {
+			w = Math.max(w, metrics.stringWidth(line));
+		}
+		int width = w + 2 * PADDING, height = lines.length * metrics.getHeight() + 2 * PADDING;
+		if(getWidth() != width || getHeight() != height) {
+			setBounds(0, 0, width, height);
+		}
+	}
+
+	protected void paintComponent(Graphics g) {
+		g.setColor(BACKGROUND);
+		g.fillRect(0, 0, getWidth(), getHeight());
+		g.setColor(Color.DARK_GRAY);
+		g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+		g.setFont(FONT);
+		FontMetrics metrics = g.getFontMetrics();
+		for(int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], PADDING, PADDING + i * metrics.getHeight() + metrics.getAscent());
+		}
+	}
+
+}
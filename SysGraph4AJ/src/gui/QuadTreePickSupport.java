@@ -0,0 +1,256 @@
+package gui;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.Context;
+import edu.uci.ics.jung.visualization.Layer;
+import edu.uci.ics.jung.visualization.MultiLayerTransformer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.picking.ShapePickSupport;
+
+/**
+ * Finds the vertices under the mouse with a quadtree of their positions, instead of testing the shape of
+ * every vertex as {@link ShapePickSupport} does, so clicks and tooltips cost log n on large graphs. Only
+ * the vertices near the point are tested against their shape. Edges are still picked by ShapePickSupport.
+ * <br>
+ * The quadtree is built at the first pick. After the layout of the viewer is replaced or its graph changes,
+ * only the vertices added, removed or moved are put in it or taken out, e.g. when an element is expanded and
+ * the rest of the graph keeps its place; it is built again only when most vertices moved, after a new layout.
+ * When vertices are dragged only the picked vertices, the ones that move, are put again in the quadtree.
+ */
+public class QuadTreePickSupport<V, E> extends ShapePickSupport<V, E> implements ChangeListener {
+
+	/**the vertices this far from a point, in pixels, are tested against their shape*/
+	private static final double RADIUS = 30;
+
+	private final VisualizationViewer<V, E> viewer;
+	/**the layout of the quadtree, null when it must be built again*/
+	private Layout<V, E> indexed = null;
+	private Node<V> tree = null;
+	/**the position every vertex has in the quadtree*/
+	private final Map<V, Point2D> positions = new HashMap<V, Point2D>();
+
+	public QuadTreePickSupport(VisualizationViewer<V, E> viewer) {
+		super(viewer);
+		this.viewer = viewer;
+		viewer.getModel().addChangeListener(this);
+	}
+
+	/**a vertex was moved or the layout was replaced, then the quadtree is updated at the next pick*/
+	public void stateChanged(ChangeEvent e) {
+		if(indexed == null || indexed != viewer.getGraphLayout()) return;
+		for(V v : viewer.getPickedVertexState().getPicked()) {
+			Point2D old = positions.get(v);
+			Point2D p = position(indexed, v);
+			if(old == null || old.equals(p)) continue;
+			if(!tree.remove(v, old) || !tree.contains(p)) {
+				indexed = null; //out of the quadtree, built again at the next pick
+				return;
+			}
+			tree.add(v, p, 0);
+			positions.put(v, p);
+		}
+	}
+
+	public V getVertex(Layout<V, E> layout, double x, double y) {
+		MultiLayerTransformer transformer = viewer.getRenderContext().getMultiLayerTransformer();
+		Point2D point = transformer.inverseTransform(Layer.VIEW, new Point2D.Double(x, y));
+		Point2D center = transformer.inverseTransform(new Point2D.Double(x, y));
+		double radius = RADIUS / transformer.getTransformer(Layer.LAYOUT).getScale();
+		V closest = null;
+		double distance = Double.MAX_VALUE;
+		for(V v : candidates(layout, new Rectangle2D.Double(center.getX() - radius, center.getY() - radius, 2 * radius, 2 * radius))) {
+			Point2D p = transformer.transform(Layer.LAYOUT, layout.transform(v));
+			Shape shape = viewer.getRenderContext().getVertexShapeTransformer().transform(v);
+			shape = AffineTransform.getTranslateInstance(p.getX(), p.getY()).createTransformedShape(shape);
+			if(shape.contains(point) && p.distance(point) < distance) {
+				closest = v;
+				distance = p.distance(point);
+			}
+		}
+		return closest;
+	}
+
+	public List<V> getVertices(Layout<V, E> layout, Shape shape) {
+		MultiLayerTransformer transformer = viewer.getRenderContext().getMultiLayerTransformer();
+		Shape area = transformer.inverseTransform(Layer.VIEW, shape);
+		List<V> vertices = new ArrayList<V>();
+		for(V v : candidates(layout, transformer.inverseTransform(shape).getBounds2D())) {
+			if(area.contains(transformer.transform(Layer.LAYOUT, layout.transform(v)))) {
+				vertices.add(v);
+			}
+		}
+		return vertices;
+	}
+
+	/**@return the vertices drawn whose position in the layout is in the rectangle*/
+	private List<V> candidates(Layout<V, E> layout, Rectangle2D rectangle) {
+		Graph<V, E> graph = layout.getGraph();
+		if((indexed != layout || positions.size() != graph.getVertexCount()) && !update(layout)) {
+			build(layout);
+		}
+		List<V> found = new ArrayList<V>();
+		tree.find(rectangle, found);
+		List<V> candidates = new ArrayList<V>(found.size());
+		for(V v : found) {
+			if(graph.containsVertex(v) && isVertexRendered(Context.<Graph<V, E>, V>getInstance(graph, v))) {
+				candidates.add(v);
+			}
+		}
+		return candidates;
+	}
+
+	private void build(Layout<V, E> layout) {
+		positions.clear();
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for(V v : layout.getGraph().getVertices()) {
+			Point2D p = position(layout, v);
+			positions.put(v, p);
+			minX = Math.min(minX, p.getX());
+			minY = Math.min(minY, p.getY());
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		//room around the vertices for the ones dragged a little out
+		double side = Math.max(maxX - minX, maxY - minY) + 2 * RADIUS;
+		tree = new Node<V>(minX - side / 2, minY - side / 2, side * 2);
+		for(Map.Entry<V, Point2D> e : positions.entrySet()) {
+			tree.add(e.getKey(), e.getValue(), 0);
+		}
+		indexed = layout;
+	}
+
+	/**
+	 * puts in the quadtree the vertices added or moved since it was built, and takes out the ones removed
+	 * @return false if it must be built again: it never was, or most vertices moved, or one is out of it
+	 */
+	private boolean update(Layout<V, E> layout) {
+		if(indexed == null) return false;
+		Graph<V, E> graph = layout.getGraph();
+		List<V> moved = new ArrayList<V>();
+		List<Point2D> to = new ArrayList<Point2D>();
+		int kept = 0;
+		for(V v : graph.getVertices()) {
+			Point2D p = position(layout, v);
+			if(p.equals(positions.get(v))) {
+				kept++;
+			} else if(tree.contains(p)) {
+				moved.add(v);
+				to.add(p);
+			} else {
+				return false;
+			}
+		}
+		if(moved.size() > kept) return false; //laid out again
+		for(Iterator<Map.Entry<V, Point2D>> i = positions.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<V, Point2D> e = i.next();
+			if(!graph.containsVertex(e.getKey())) {
+				tree.remove(e.getKey(), e.getValue());
+				i.remove();
+			}
+		}
+		for(int i = 0; i < moved.size(); i++) {
+			Point2D old = positions.put(moved.get(i), to.get(i));
+			if(old != null) tree.remove(moved.get(i), old);
+			tree.add(moved.get(i), to.get(i), 0);
+		}
+		indexed = layout;
+		return true;
+	}
+
+	/**@return a copy of the position of the vertex, the layout may change the one it keeps when the vertex moves*/
+	private static <V, E> Point2D position(Layout<V, E> layout, V v) {
+		Point2D p = layout.transform(v);
+		return new Point2D.Double(p.getX(), p.getY());
+	}
+
+	/**a square of the quadtree, with the vertices in it while they are few*/
+	private static class Node<V> {
+		private static final int BUCKET = 16;
+		private static final int MAX_DEPTH = 40;
+		final double left, top, size;
+		List<V> vertices = new ArrayList<V>();
+		List<Point2D> points = new ArrayList<Point2D>();
+		Node<V>[] children = null;
+
+		Node(double left, double top, double size) {
+			this.left = left;
+			this.top = top;
+			this.size = size;
+		}
+
+		boolean contains(Point2D p) {
+			return p.getX() >= left && p.getX() < left + size && p.getY() >= top && p.getY() < top + size;
+		}
+
+		void add(V v, Point2D p, int depth) {
+			if(children != null) {
+				child(p).add(v, p, depth + 1);
+				return;
+			}
+			vertices.add(v);
+			points.add(p);
+			if(vertices.size() > BUCKET && depth < MAX_DEPTH) {
+				children = newArray(4);
+				double half = size / 2;
+				for(int q = 0; q < 4; q++) {
+					children[q] = new Node<V>(left + (q % 2) * half, top + (q / 2) * half, half);
+				}
+				for(int i = 0; i < vertices.size(); i++) {
+					child(points.get(i)).add(vertices.get(i), points.get(i), depth + 1);
+				}
+				vertices = null;
+				points = null;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <V> Node<V>[] newArray(int length) {
+			return (Node<V>[])new Node<?>[length];
+		}
+
+		private Node<V> child(Point2D p) {
+			double half = size / 2;
+			return children[(p.getX() >= left + half ? 1 : 0) + (p.getY() >= top + half ? 2 : 0)];
+		}
+
+		/**removes the vertex, which was added at p*/
+		boolean remove(V v, Point2D p) {
+			if(children != null) {
+				return child(p).remove(v, p);
+			}
+			int i = vertices.indexOf(v);
+			if(i < 0) return false;
+			vertices.remove(i);
+			points.remove(i);
+			return true;
+		}
+
+		void find(Rectangle2D rectangle, List<V> found) {
+			if(!rectangle.intersects(left, top, size, size)) return;
+			if(children != null) {
+				for(Node<V> child : children) {
+					child.find(rectangle, found);
+				}
+				return;
+			}
+			for(int i = 0; i < vertices.size(); i++) {
+				if(rectangle.contains(points.get(i))) found.add(vertices.get(i));
+			}
+		}
+	}
+
+}
@@ -21,6 +21,8 @@ import model.SysField;
 import model.SysMethod;
 import model.SysPackage;
 import model.SysPointcut;
+import visualization.MoreStub;
+import visualization.SysEdge;
 
 import org.apache.commons.collections15.Transformer;
 
@@ -40,30 +42,31 @@ public class SysTransformers {
 	protected static float[] dash_slashes = {10.0f};
 	protected static float[] dependency_slashes = {20.0f};
 
+	//one stroke per kind of edge, the strokes are immutable
+	private static final Stroke treeStroke = new BasicStroke(1.0f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 10.0f, dash_slashes, 100.0f);
+	private static final Stroke dependencyStroke = new BasicStroke(1.0f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 10.0f, dependency_slashes, 100.0f);
+	private static final Stroke cfgStroke = new BasicStroke(1.0f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 10.0f, new float[]{1.0f}, 100.0f);
+
 	//edge visual
-	private static Transformer<Object, Stroke> edgeStrokeTransformer = new Transformer<Object, Stroke>(){
-		public Stroke transform(Object arg0) {
-			float[] slashes = dash_slashes;
-			if(arg0 instanceof Float) {
-				Float num = (Float) arg0;
-				if(num % 1 == 0.5)  {
-					return new BasicStroke(1.0f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 10.0f, dependency_slashes, 100.0f);
-				}			
-			} else if(arg0 instanceof CFGEdge) {
-				slashes = new float[]{1.0f};
+	private static Transformer<SysEdge, Stroke> edgeStrokeTransformer = new Transformer<SysEdge, Stroke>(){
+		public Stroke transform(SysEdge arg0) {
+			switch(arg0.getKind()) {
+			case CALL:
+			case ADVICE:
+				return dependencyStroke;
+			case CFG:
+				return cfgStroke;
+			default:
+				return treeStroke;
 			}
-			return new BasicStroke(1.0f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_BEVEL, 10.0f, slashes, 100.0f);
 		}
 	};
 
 	//edge label
-	private static Transformer<Object, String> edgeToString = new Transformer<Object, String>(){
-		public String transform(Object arg0){
-			if(arg0 instanceof Float) {
-				Float num = (Float) arg0;
-				if(num % 1 == 0.5) {
-					return new Integer((int)(num/1)).toString();
-				}
+	private static Transformer<SysEdge, String> edgeToString = new Transformer<SysEdge, String>(){
+		public String transform(SysEdge arg0){
+			if(arg0.isDependency()) {
+				return arg0.getKind() == SysEdge.Kind.CALL ? "call" : "advice";
 			} else if(arg0 instanceof CFGEdge) {
 				CFGEdge edge = (CFGEdge) arg0;
 				CFGEdgeType edgeType = edge.getEdgeType();
@@ -91,6 +94,8 @@ public class SysTransformers {
 				return Color.CYAN;
 			if(arg0 instanceof SysField)
 				return Color.GRAY;
+			if(arg0 instanceof MoreStub)
+				return Color.LIGHT_GRAY;
 			
 			if(arg0 instanceof CFGNode) {
 				CFGNode node = (CFGNode) arg0;
@@ -148,32 +153,34 @@ public class SysTransformers {
 		}
 	};
 	
-	private static Transformer<Context<Graph<IElement,Object>,Object>, Shape> edgeShape = new Transformer<Context<Graph<IElement,Object>,Object>, Shape>() {
+	//the shapes of the edges, made once
+	private static final EdgeShape.Loop<IElement, SysEdge> loop = new EdgeShape.Loop<IElement, SysEdge>();
+	private static final EdgeShape.QuadCurve<IElement, SysEdge> quadCurve = new EdgeShape.QuadCurve<IElement, SysEdge>();
+	private static final EdgeShape.Orthogonal<IElement, SysEdge> orthogonal = new EdgeShape.Orthogonal<IElement, SysEdge>();
+	static {
+		loop.setControlOffsetIncrement(65.0f);
+		quadCurve.setControlOffsetIncrement(15.0f);
+	}
+
+	private static Transformer<Context<Graph<IElement, SysEdge>,SysEdge>, Shape> edgeShape = new Transformer<Context<Graph<IElement, SysEdge>,SysEdge>, Shape>() {
 		
 		@Override
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		public Shape transform(Context<Graph<IElement, Object>, Object> arg0) {
-			Object element = arg0.element;
+		public Shape transform(Context<Graph<IElement, SysEdge>, SysEdge> arg0) {
+			SysEdge element = arg0.element;
 			
 			if(element instanceof CFGEdge) {
 				CFGEdge edge = (CFGEdge) element;
 				
 				CFGNode childNode = edge.getChildNode();
 				if(childNode.equals(edge.getParentNode())) {
-					EdgeShape.Loop loop = new EdgeShape.Loop();
-					loop.setControlOffsetIncrement(65.0f);
 					Ellipse2D el = (Ellipse2D) loop.transform(arg0);
 					
 					return el;
 					
 				} else if(childNode.equals(edge.getParentNode().getOwner())) {
-					EdgeShape.QuadCurve quadCurve = new EdgeShape.QuadCurve();
-					quadCurve.setControlOffsetIncrement(15.0f);
-					
 					return quadCurve.transform(arg0);
 				}
 			}
-			EdgeShape.Orthogonal orthogonal = new EdgeShape.Orthogonal();
 			return orthogonal.transform(arg0);
 		}
 	};
@@ -191,15 +198,15 @@ public class SysTransformers {
 		return vertexToString;
 	}
 	
-	public final Transformer<Context<Graph<IElement,Object>,Object>, Shape> getEdgeShape() {
+	public final Transformer<Context<Graph<IElement, SysEdge>,SysEdge>, Shape> getEdgeShape() {
 		return edgeShape;
 	}
 	
-	public final Transformer<Object, String> getEdgeToString() {
+	public final Transformer<SysEdge, String> getEdgeToString() {
 		return edgeToString;
 	}
 
-	public final Transformer<Object, Stroke> getEdgeStrokeTransformer() {
+	public final Transformer<SysEdge, Stroke> getEdgeStrokeTransformer() {
 		return edgeStrokeTransformer;
 	}
 	
@@ -10,22 +10,32 @@ import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
 
+import javax.swing.AbstractAction;
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
+import javax.swing.JMenuItem;
 import javax.swing.JTextArea;
 import javax.swing.KeyStroke;
 
 import model.IElement;
 import model.SysRoot;
 import visualization.ModelToGraph;
+import visualization.ParallelTreeLayout;
+import visualization.SysEdge;
 import visualization.SysGraphMouse;
 import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
-import edu.uci.ics.jung.algorithms.layout.TreeLayout;
+import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.graph.DelegateForest;
 import edu.uci.ics.jung.graph.DelegateTree;
 import edu.uci.ics.jung.visualization.Layer;
@@ -63,7 +73,7 @@ public class SysUtils {
 		c.add(pane, BorderLayout.CENTER);
 		target.setCenter(pane);
 		if(pane instanceof VisualizationViewer){
-			VisualizationViewer<IElement, Object> vv = (VisualizationViewer<IElement,Object>) pane;
+			VisualizationViewer<IElement, SysEdge> vv = (VisualizationViewer<IElement, SysEdge>) pane;
 			target.makeGoodVisual(vv);
 			vv.updateUI();
 		}
@@ -71,22 +81,31 @@ public class SysUtils {
 
 	/**
 	 * Makes a good visual, i.e., set transformers to put color in the graph, set names, and tooltip*/
-	public static void makeGoodVisual(VisualizationViewer<IElement, Object>  vv, GUIWindowInterface target){
-		RenderContext<IElement, Object> rc = vv.getRenderContext();
-		rc.setVertexFillPaintTransformer(TRANSFORMERS.getVertexPaint());		//vertex color
-		rc.setEdgeStrokeTransformer(TRANSFORMERS.getEdgeStrokeTransformer());		//edge type
-		rc.setVertexLabelTransformer(TRANSFORMERS.getVertexToString());		//vertex label
-		rc.setEdgeLabelTransformer(TRANSFORMERS.getEdgeToString());			//edge label
-		rc.setEdgeShapeTransformer(TRANSFORMERS.getEdgeShape());
+	public static void makeGoodVisual(VisualizationViewer<IElement, SysEdge>  vv, GUIWindowInterface target){
+		applyTransformers(vv.getRenderContext());
 		vv.setVertexToolTipTransformer(TRANSFORMERS.getToolTip());
+		LevelOfDetail.install(vv);		//draws only what can be seen
+		PerformanceOverlay.install(vv, target);		//times the repaints
+		if(!(vv.getPickSupport() instanceof QuadTreePickSupport)) {
+			vv.setPickSupport(new QuadTreePickSupport<IElement, SysEdge>(vv));		//picks without testing every vertex
+		}
 		vv.getRenderer().getVertexLabelRenderer().setPosition(Position.AUTO);
 		/*care about the mouse plugin*/
 		target.makeMenuBar(vv);
 		}
 
+		/**puts the colors, strokes, labels and edge shapes of the graphs in the render context*/
+		public static void applyTransformers(RenderContext<IElement, SysEdge> rc){
+			rc.setVertexFillPaintTransformer(TRANSFORMERS.getVertexPaint());		//vertex color
+			rc.setEdgeStrokeTransformer(TRANSFORMERS.getEdgeStrokeTransformer());		//edge type
+			rc.setVertexLabelTransformer(TRANSFORMERS.getVertexToString());		//vertex label
+			rc.setEdgeLabelTransformer(TRANSFORMERS.getEdgeToString());			//edge label
+			rc.setEdgeShapeTransformer(TRANSFORMERS.getEdgeShape());
+		}
+
 		/**
 		 * makes a menu bar for the GUI, based on the VV*/
-		public static void makeMenuBar(VisualizationViewer<IElement, Object>  vv, GUIWindowInterface target, SysRoot r){
+		public static void makeMenuBar(VisualizationViewer<IElement, SysEdge>  vv, GUIWindowInterface target, SysRoot r){
 			SysGraphMouse gm = new SysGraphMouse(target, r);
 			vv.setGraphMouse(gm);
 			JMenuBar menuBar = new JMenuBar();
@@ -102,11 +121,90 @@ public class SysUtils {
 			menu.setMinimumSize(new Dimension(90,20));
 			menu.setPreferredSize(new Dimension(90,20));
 			menuBar.add(menu);
+			menuBar.add(makeExportMenu(vv, target));
+			menuBar.add(makeViewMenu(vv, target));
 			target.setJMenuBar(menuBar);
+			Overview.follow(vv, target.getFrame());
+		}
+
+		/**a menu to open the {@link Overview} of the window and to show the {@link PerformanceOverlay}*/
+		private static JMenu makeViewMenu(final VisualizationViewer<IElement, SysEdge> vv, final GUIWindowInterface target){
+			JMenu menu = new JMenu("View");
+			menu.setIcon(null);
+			menu.setPreferredSize(new Dimension(50,20));
+			JMenuItem overview = menu.add(new AbstractAction("Overview") {
+				private static final long serialVersionUID = 1L;
+
+				public void actionPerformed(ActionEvent e) {
+					Overview.show(vv, target.getFrame());
+				}
+			});
+			overview.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0));
+			final JCheckBoxMenuItem overlay = new JCheckBoxMenuItem("Performance Overlay", PerformanceOverlay.isShown());
+			overlay.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F5, 0));
+			overlay.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					PerformanceOverlay.setShown(overlay.isSelected());
+					vv.repaint();
+				}
+			});
+			menu.add(overlay);
+			return menu;
+		}
+
+		/**a menu to save the whole graph as a picture, see {@link GraphExport}*/
+		private static JMenu makeExportMenu(final VisualizationViewer<IElement, SysEdge> vv, final GUIWindowInterface target){
+			JMenu menu = new JMenu("Export");
+			menu.setIcon(null);
+			menu.setPreferredSize(new Dimension(60,20));
+			menu.add(new AbstractAction("PNG...") {
+				private static final long serialVersionUID = 1L;
+
+				public void actionPerformed(ActionEvent e) {
+					export(vv, target, "png");
+				}
+			});
+			menu.add(new AbstractAction("SVG...") {
+				private static final long serialVersionUID = 1L;
+
+				public void actionPerformed(ActionEvent e) {
+					export(vv, target, "svg");
+				}
+			});
+			return menu;
+		}
+
+		/**asks for a file and draws the graph of the viewer in it, in background*/
+		private static void export(VisualizationViewer<IElement, SysEdge> vv, final GUIWindowInterface target, final String format){
+			JFileChooser chooser = new JFileChooser();
+			chooser.setSelectedFile(new File("graph." + format));
+			if(chooser.showSaveDialog(target.getFrame()) != JFileChooser.APPROVE_OPTION) {
+				return;
+			}
+			File chosen = chooser.getSelectedFile();
+			final File file = chosen.getName().toLowerCase().endsWith("." + format) ? chosen : new File(chosen.getPath() + "." + format);
+			//the graph shown can change while it is drawn
+			final Layout<IElement, SysEdge> layout = GraphExport.snapshot(vv.getGraphLayout());
+			new AnalysisTask<Boolean>(target, "exporting the graph to " + file.getName()) {
+				protected Boolean analyse() throws IOException {
+					final AnalysisTask<Boolean> task = this;
+					GraphExport.Progress progress = new GraphExport.Progress() {
+						public boolean progress(int done, int total) {
+							task.progress(done, total, file.getName());
+							return !task.stopRequested();
+						}
+					};
+					return format.equals("png") ? GraphExport.writePNG(layout, 1, file, progress) : GraphExport.writeSVG(layout, file, progress);
+				}
+
+				protected void apply(Boolean written) {
+					target.getTextArea().append(written ? "Graph exported to " + file + "\n" : "Export stopped\n");
+				}
+			}.submit();
 		}
 
 		/**center the vertex in screen*/
-		public static void setAtCenter(IElement vertex, AggregateLayout<IElement, Object> al, JFrame frame, VisualizationViewer<IElement, Object> vv){
+		public static void setAtCenter(IElement vertex, AggregateLayout<IElement, SysEdge> al, JFrame frame, VisualizationViewer<IElement, SysEdge> vv){
 			Point2D vertexPoint = al.transform(vertex);
 			Rectangle frame_area = frame.getBounds();
 			double calculatedDeltaY = 120.0d;
@@ -129,16 +227,23 @@ public class SysUtils {
 		 * 		Parametro que referencia a raiz do programa.
 		 * @return
 		 */
-		public static VisualizationViewer<IElement, Object> createVisualizationViewerBySysRoot(
+		public static VisualizationViewer<IElement, SysEdge> createVisualizationViewerBySysRoot(
 				SysRoot root, int deltaX, int deltaY) {
-			DelegateTree<IElement, Object> delegateTree = new  DelegateTree<IElement, Object>();
+			VisualizationViewer<IElement, SysEdge> visualizationViewer = new VisualizationViewer<IElement, SysEdge>(
+					createLayoutBySysRoot(root, deltaX, deltaY));
+			return visualizationViewer;
+		}
+
+		/**
+		 * Retorna o layout do grafo de um {@link SysRoot}. Não usa a interface, então pode ser
+		 * calculado numa {@link LayoutTask}.
+		 */
+		public static Layout<IElement, SysEdge> createLayoutBySysRoot(SysRoot root, int deltaX, int deltaY) {
+			DelegateTree<IElement, SysEdge> delegateTree = new  DelegateTree<IElement, SysEdge>();
 			delegateTree.addVertex(root);
 			delegateTree = ModelToGraph.putAllChildren_SysRoot(delegateTree, root);
-			DelegateForest<IElement, Object> delegateForest = new DelegateForest<IElement, Object>(delegateTree);
-			VisualizationViewer<IElement, Object> visualizationViewer = new VisualizationViewer<IElement, Object>(
-					new TreeLayout<IElement, Object>(
-							delegateForest, deltaX, deltaY));
-			return visualizationViewer;
+			DelegateForest<IElement, SysEdge> delegateForest = new DelegateForest<IElement, SysEdge>(delegateTree);
+			return ParallelTreeLayout.layout(delegateForest, deltaX, deltaY);
 		}
 
 
@@ -0,0 +1,222 @@
+package gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import model.IElement;
+import model.SysElement;
+import analysis.AnalysisListener;
+
+/**
+ * Merges the analyses and graph updates asked for in a window in a short time, e.g. by double clicking several
+ * packages one after the other, so the graph is rebuilt once for all of them instead of once for each.
+ * <ul>
+ * <li>The analyses asked for while an analysis of the window is queued or running are added to it: a single
+ * {@link AnalysisTask} analyses them all, one after the other, and an element asked for twice is analysed once.</li>
+ * <li>The updates of the graph are collected and applied together, with every element that changed, at most
+ * once every {@link #FRAME_MILLIS}.</li>
+ * </ul>
+ * A window has one scheduler, see {@link #of(GUIWindowInterface, Updater)}. Only used on the event dispatch
+ * thread, except for the analyses.
+ */
+public class UpdateScheduler {
+
+	/**the shortest time between two updates of the graph of a window*/
+	public static final int FRAME_MILLIS = 100;
+
+	/**what updates the graph of a window*/
+	public interface Updater {
+		/**updates the graph after the given elements changed, in the order they were asked for. Called on the event dispatch thread.*/
+		void update(List<IElement> changed);
+	}
+
+	/**the analysis of an element*/
+	public interface Analysis {
+		/**
+		 * analyses the element, on the analysis thread
+		 * @param listener told about the elements found, returns false when the user cancelled
+		 * @return false if nothing changed, e.g. the element was analysed by an earlier request, and the graph is not updated
+		 */
+		boolean analyse(AnalysisListener listener) throws Exception;
+	}
+
+	private final GUIWindowInterface window;
+	/**the updater given last, only used on the event dispatch thread*/
+	private Updater updater;
+	/**the elements that changed since the last update*/
+	private final Set<IElement> changed = new LinkedHashSet<IElement>();
+	private final Timer timer;
+	/**the analyses not started yet, guarded by this*/
+	private final List<Request> queue = new ArrayList<Request>();
+	/**the elements of the queue and of the analysis running, guarded by this*/
+	private final Set<IElement> queued = Collections.newSetFromMap(new IdentityHashMap<IElement, Boolean>());
+	/**the task that takes the analyses from the queue, null when none is queued or running, guarded by this*/
+	private Batch batch = null;
+
+	private UpdateScheduler(GUIWindowInterface window, Updater updater) {
+		this.window = window;
+		this.updater = updater;
+		this.timer = new Timer(FRAME_MILLIS, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				update();
+			}
+		});
+		this.timer.setRepeats(false);
+	}
+
+	/**
+	 * @param updater what updates the graph of the window from now on, it replaces the one given before: the
+	 * window may show another project since, e.g. the main window, and its graph is updated with the new one
+	 * @return the scheduler of the window
+	 */
+	public static UpdateScheduler of(GUIWindowInterface window, Updater updater) {
+		UpdateScheduler scheduler = find(window);
+		if(scheduler == null) {
+			scheduler = new UpdateScheduler(window, updater);
+			window.getFrame().getRootPane().putClientProperty(UpdateScheduler.class, scheduler);
+		} else {
+			scheduler.updater = updater;
+		}
+		return scheduler;
+	}
+
+	/**asks for the graph to be updated after the element changed, together with the other elements that change meanwhile*/
+	public void requestUpdate(IElement element) {
+		changed.add(element);
+		if(!timer.isRunning()) {
+			timer.start();
+		}
+	}
+
+	/**
+	 * asks for the element to be analysed in background and the graph to be updated after it, with the other
+	 * analyses asked for before it is done. Nothing is done if the element is already waiting to be analysed.
+	 * @param description what is done, e.g. "analysing package p", shown in the progress monitor
+	 */
+	public synchronized void requestAnalysis(SysElement element, String description, Analysis analysis) {
+		if(!queued.add(element)) {
+			return;
+		}
+		queue.add(new Request(element, analysis));
+		if(batch == null) {
+			batch = new Batch(description);
+			batch.submit();
+		}
+	}
+
+	/**@return the analyses waiting or running in the window, merged in its tasks*/
+	public static int getPendingAnalyses(GUIWindowInterface window) {
+		UpdateScheduler scheduler = find(window);
+		if(scheduler == null) {
+			return 0;
+		}
+		synchronized(scheduler) {
+			return scheduler.queued.size();
+		}
+	}
+
+	/**@return the scheduler of the window, null if it has none*/
+	private static UpdateScheduler find(GUIWindowInterface window) {
+		//kept by the window, so it goes away with it
+		return (UpdateScheduler)window.getFrame().getRootPane().getClientProperty(UpdateScheduler.class);
+	}
+
+	private void update() {
+		if(changed.isEmpty()) {
+			return;
+		}
+		List<IElement> elements = new ArrayList<IElement>(changed);
+		changed.clear();
+		updater.update(elements);
+	}
+
+	/**@return the next analysis of the queue, null when it is empty and the batch is over*/
+	private synchronized Request next(boolean stop) {
+		if(stop || queue.isEmpty()) {
+			//the analyses asked for from now on go in a new batch
+			queue.clear();
+			queued.clear();
+			batch = null;
+			return null;
+		}
+		return queue.remove(0);
+	}
+
+	private static class Request {
+		final SysElement element;
+		final Analysis analysis;
+		/**the time the analysis took, in nanoseconds, -1 if there was nothing to analyse*/
+		long took = -1;
+
+		Request(SysElement element, Analysis analysis) {
+			this.element = element;
+			this.analysis = analysis;
+		}
+	}
+
+	/**analyses the requests of the queue until it is empty*/
+	private class Batch extends AnalysisTask<List<Request>> {
+		/**the element being analysed, its elements found so far are shown in batches*/
+		private volatile SysElement current = null;
+
+		Batch(String description) {
+			super(window, description);
+		}
+
+		protected List<Request> analyse() {
+			List<Request> done = new ArrayList<Request>();
+			try {
+				for(Request request = next(false); request != null; request = next(stopRequested())) {
+					current = request.element;
+					progress(0, 1, request.element.getName());
+					long start = System.nanoTime();
+					AnalysisListener listener = new AnalysisListener() {
+						public boolean analysed(SysElement e, int done, int total) {
+							progress(done, total, e.getName());
+							publishBatch();
+							return !stopRequested();
+						}
+					};
+					try {
+						if(request.analysis.analyse(listener)) {
+							request.took = System.nanoTime() - start;
+						}
+					} catch(Exception e) {
+						//the other analyses of the batch go on
+						System.err.println("[UpdateScheduler]: could not analyse \"" + request.element.getFullyQualifiedName() + "\": " + e);
+						e.printStackTrace();
+					}
+					done.add(request);
+				}
+			} catch(Error e) {
+				next(true); //a new batch is started for the next request
+				throw e;
+			}
+			return done;
+		}
+
+		protected void applyBatch() {
+			SysElement element = current;
+			if(element != null) {
+				requestUpdate(element);
+			}
+		}
+
+		protected void apply(List<Request> done) {
+			for(Request request : done) {
+				if(request.took < 0) continue; //analysed by an earlier request
+				window.getTextArea().append("Took " + request.took/1000000.0d + "ms to analyse " + request.element.getName() + "\n");
+				requestUpdate(request.element);
+			}
+		}
+	}
+
+}
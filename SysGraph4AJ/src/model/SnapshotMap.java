@@ -0,0 +1,83 @@
+package model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A map that is never changed in place, used for the children of the model elements.
+ * <br>
+ * Every change copies the current map, changes the copy and publishes it with a single volatile write, so
+ * readers never lock and always iterate over a whole version of the map, even while the analysis adds
+ * elements from another thread. Writers are serialized. Copying is cheap for the maps of the model, which
+ * are small and read far more often (by the painting and the transformers) than written.
+ * <br>
+ * Every published change also increments the {@link #modelVersion()}, so readers can tell whether the model
+ * changed since they last looked at it.
+ */
+public class SnapshotMap<K, V> {
+
+	private static final AtomicLong version = new AtomicLong();
+
+	private volatile Map<K, V> map = Collections.emptyMap();
+
+	public V get(Object key) {
+		return map.get(key);
+	}
+
+	public boolean containsKey(Object key) {
+		return map.containsKey(key);
+	}
+
+	/**@return the values of the current version. Later changes to the map are not seen by it.*/
+	public Collection<V> values() {
+		return Collections.unmodifiableCollection(map.values());
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	public synchronized void put(K key, V value) {
+		Map<K, V> copy = new HashMap<K, V>(map);
+		copy.put(key, value);
+		publish(copy);
+	}
+
+	/**puts all the given entries at once: readers see either none or all of them*/
+	public synchronized void putAll(Map<? extends K, ? extends V> entries) {
+		if(entries.isEmpty()) return;
+		Map<K, V> copy = new HashMap<K, V>(map);
+		copy.putAll(entries);
+		publish(copy);
+	}
+
+	public synchronized V remove(Object key) {
+		if(!map.containsKey(key)) return null;
+		Map<K, V> copy = new HashMap<K, V>(map);
+		V removed = copy.remove(key);
+		publish(copy);
+		return removed;
+	}
+
+	private void publish(Map<K, V> copy) {
+		map = copy;
+		version.incrementAndGet();
+	}
+
+	public String toString() {
+		return map.toString();
+	}
+
+	/**@return a number that changes every time a map of the model changes*/
+	public static long modelVersion() {
+		return version.get();
+	}
+
+}
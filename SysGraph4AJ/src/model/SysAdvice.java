@@ -1,7 +1,6 @@
 package model;
 
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
 import java.util.HashSet;
 
 import org.aspectj.lang.annotation.After;
@@ -30,7 +29,8 @@ public class SysAdvice extends SysMethod{
 	private String value="";
 	
 	
-	private HashMap<String, SysMethod> affects = new HashMap<String,SysMethod>();
+	/**written by the analysis, read by the graphs while it runs*/
+	private SnapshotMap<String, SysMethod> affects = new SnapshotMap<String, SysMethod>();
 	
 	
 	public SysAdvice(java.lang.reflect.Method m){
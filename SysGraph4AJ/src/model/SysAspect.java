@@ -1,6 +1,5 @@
 package model;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -8,8 +7,8 @@ import java.util.Set;
 
 public class SysAspect extends SysClass {
 
-	private HashMap<String, SysAdvice> advice = new HashMap<String,SysAdvice>();
-	private HashMap<String, SysPointcut> pointcuts = new HashMap<String, SysPointcut>();
+	private SnapshotMap<String, SysAdvice> advice = new SnapshotMap<String, SysAdvice>();
+	private SnapshotMap<String, SysPointcut> pointcuts = new SnapshotMap<String, SysPointcut>();
 
 	/**
 	 * Constructs an Aspect from the given class, removes the class of its owner and add the new aspect to its owner
@@ -70,6 +69,11 @@ public class SysAspect extends SysClass {
 		return this.advice.containsKey(ad.getName());
 	}
 
+	/**removes the given advice from this aspect*/
+	public void remove(SysAdvice ad) {
+		if(this.contains(ad)) this.advice.remove(ad.getName());
+	}
+
 	/**add a pointcut*/
 	public void add(SysPointcut p){
 		this.pointcuts.put(p.getName(), p);
@@ -84,6 +88,10 @@ public class SysAspect extends SysClass {
 		return new HashSet<SysAdvice>(this.advice.values());
 	}
 
+	public HashSet<SysPointcut> getPointcuts() {
+		return new HashSet<SysPointcut>(this.pointcuts.values());
+	}
+
 	/**get a new class with same name and owner, but not add this class to the owner*/
 	public SysElement partialClone(){
 		SysAspect c = new SysAspect(this.getName());
@@ -1,16 +1,18 @@
 package model;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 public class SysClass implements SysElement {
 
-	private HashSet<SysClass> interfaces = new HashSet<SysClass>();
-	private HashMap<String, SysField> fields = new HashMap<String, SysField>();
-	private HashMap<String, SysClass> innerClasses = new HashMap<String, SysClass>();
+	private Set<SysClass> interfaces = new CopyOnWriteArraySet<SysClass>();
+	private SnapshotMap<String, SysField> fields = new SnapshotMap<String, SysField>();
+	private SnapshotMap<String, SysClass> innerClasses = new SnapshotMap<String, SysClass>();
 	private boolean isAnalysed = false;
-	private HashMap<String, SysMethod> methods = new HashMap<String,SysMethod>();
+	private SnapshotMap<String, SysMethod> methods = new SnapshotMap<String, SysMethod>();
 	private String name;
 	private SysElement owner;
 	private SysClass superClass;
@@ -72,20 +74,24 @@ public class SysClass implements SysElement {
 
 	}
 
-	/**add a set of fields*/
-	public void addFields(HashSet<SysField> fields) {
+	/**add a set of fields, they are published at once*/
+	public void addFields(Collection<SysField> fields) {
+		HashMap<String, SysField> added = new HashMap<String, SysField>();
 		for(SysField f : fields){
-			this.add(f);
+			if(!this.contains(f) && !f.getName().contains("ajc$")) added.put(f.getName(), f);
 			f.setOwner(this);
 		}
+		this.fields.putAll(added);
 	}
 
-	/**add a set of methods*/
-	public void addMethods(HashSet<SysMethod> methods) {
+	/**add a set of methods, they are published at once*/
+	public void addMethods(Collection<SysMethod> methods) {
+		HashMap<String, SysMethod> added = new HashMap<String, SysMethod>();
 		for(SysMethod m : methods){
-			this.add(m);
+			if(!this.contains(m)) added.put(m.toString(), m);
 			m.setOwner(this);
 		}
+		this.methods.putAll(added);
 	}
 
 	/**verify if there is a inner class equals the passed class*/
@@ -219,7 +225,7 @@ public class SysClass implements SysElement {
 
 	/**removes a Method from this class*/
 	public void remove(SysMethod m) {
-		if(contains(m)) methods.remove(m.getName());		  
+		if(contains(m)) methods.remove(m.toString());		  
 	}
 
 	/**gets the maximum element in the tree*/
@@ -265,7 +271,7 @@ public class SysClass implements SysElement {
 	}
 
 	/**Get a hashSet of the interfaces this class implements*/
-	public HashSet<SysClass> getInterfaces(){
+	public Set<SysClass> getInterfaces(){
 		return this.interfaces;
 	}
 
@@ -1,12 +1,12 @@
 package model;
 
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.bcel.classfile.Method;
 
@@ -23,10 +23,11 @@ public class SysMethod implements SysElement {
 	private boolean isAnalysed;
 	private Vector<String> parameters = new Vector<String>();
 
-	private ArrayList<String> exceptions = new ArrayList<String>();
-	private ArrayList<String> exceptionsCatched = new ArrayList<String>();
-	private ArrayList<SysMethod> calls = new ArrayList<SysMethod>();
-	private ArrayList<SysAdvice> affected = new ArrayList<SysAdvice>();
+	/*copy-on-write lists: the analysis adds to them while the GUI reads them*/
+	private List<String> exceptions = new CopyOnWriteArrayList<String>();
+	private List<String> exceptionsCatched = new CopyOnWriteArrayList<String>();
+	private List<SysMethod> calls = new CopyOnWriteArrayList<SysMethod>();
+	private List<SysAdvice> affected = new CopyOnWriteArrayList<SysAdvice>();
 	
 	private java.lang.reflect.Method method;
 
@@ -85,8 +86,7 @@ public class SysMethod implements SysElement {
 
 	/**@param s a hash set of called methods*/
 	public void add(HashSet<SysMethod> s) {
-		for(SysMethod a : s)
-			calls.add(a);
+		calls.addAll(s);
 	}
 
 	/**@param e an exception declared to throw*/
@@ -101,8 +101,7 @@ public class SysMethod implements SysElement {
 
 	/**@param s a hash set of called methods*/
 	public void addDependency(HashSet<SysMethod> s) {
-		for(SysMethod a : s)
-			this.calls.add(a);
+		this.calls.addAll(s);
 	}
 
 	/**@param sysMethod a called method*/
@@ -110,6 +109,11 @@ public class SysMethod implements SysElement {
 		this.calls.add(sysMethod); 
 	}
 
+	/**@param s the called methods, in order, added at once: the list is copied once and not for every call*/
+	public void addDependencies(List<SysMethod> s) {
+		this.calls.addAll(s);
+	}
+
 	/**@param exceptionsCalls exceptions declared to throw*/
 	public void addException(List<String> exceptionsCalls) {
 		for(String s : exceptionsCalls){
@@ -168,7 +172,7 @@ public class SysMethod implements SysElement {
 	}
 
 	/**get all the called methods*/
-	public ArrayList<SysMethod> getCalls(){
+	public List<SysMethod> getCalls(){
 		return this.calls;
 	}
 
@@ -177,7 +181,7 @@ public class SysMethod implements SysElement {
 	}
 
 	/**get all the exceptions declared to throw*/
-	public ArrayList<String> getExceptions(){
+	public List<String> getExceptions(){
 		return this.exceptions;
 	}
 
@@ -263,7 +267,7 @@ public class SysMethod implements SysElement {
 	}
 
 	public void setDependency(HashSet<SysMethod> s) {
-		this.calls = new ArrayList<SysMethod>(s);
+		this.calls = new CopyOnWriteArrayList<SysMethod>(s);
 	}
 
 	public void setIsAnalysed(boolean b) {
@@ -457,7 +461,7 @@ public class SysMethod implements SysElement {
 	}
 
 	/**get all the called classes that contains exception in name*/
-	public ArrayList<String> getCatchedExceptions(){
+	public List<String> getCatchedExceptions(){
 		return this.exceptionsCatched;
 	}
 
@@ -1,7 +1,10 @@
 package model;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import analysis.MethodAnalysis;
@@ -9,11 +12,11 @@ import analysis.MethodAnalysis;
 public class SysPackage implements SysElement{
 
 	private String name;
-	private HashMap<String, SysClass> classes = new HashMap<String, SysClass>();
-	private HashMap<String, SysPackage> packages = new HashMap<String, SysPackage>();
+	private SnapshotMap<String, SysClass> classes = new SnapshotMap<String, SysClass>();
+	private SnapshotMap<String, SysPackage> packages = new SnapshotMap<String, SysPackage>();
 	private SysPackage owner;
 	private boolean isAnalysed = false;
-	private HashMap<String, SysAspect> aspects = new HashMap<String, SysAspect>();
+	private SnapshotMap<String, SysAspect> aspects = new SnapshotMap<String, SysAspect>();
 
 
 
@@ -66,6 +69,39 @@ public class SysPackage implements SysElement{
 		}
 	}
 
+	/**
+	 * adds the classes, aspects and packages at once: adding them one at a time copies the maps of the package
+	 * for every element (see {@link SnapshotMap}). The ones already in the package are merged as by add.
+	 */
+	public void addAll(List<? extends SysElement> elements) {
+		Map<String, SysClass> newClasses = new HashMap<String, SysClass>();
+		Map<String, SysAspect> newAspects = new HashMap<String, SysAspect>();
+		Map<String, SysPackage> newPackages = new HashMap<String, SysPackage>();
+		List<SysElement> merged = new ArrayList<SysElement>();
+		for(SysElement e : elements) {
+			if(e instanceof SysAspect && !contains((SysAspect)e) && !newAspects.containsKey(e.getName())) {
+				newAspects.put(e.getName(), (SysAspect)e);
+				((SysAspect)e).setOwner(this);
+			} else if(e instanceof SysClass && !(e instanceof SysAspect) && !contains((SysClass)e) && !newClasses.containsKey(e.getName())) {
+				newClasses.put(e.getName(), (SysClass)e);
+				((SysClass)e).setOwner(this);
+			} else if(e instanceof SysPackage && !contains((SysPackage)e) && !newPackages.containsKey(e.getName())) {
+				newPackages.put(e.getName(), (SysPackage)e);
+				((SysPackage)e).setOwner(this);
+			} else {
+				merged.add(e);
+			}
+		}
+		this.classes.putAll(newClasses);
+		this.aspects.putAll(newAspects);
+		this.packages.putAll(newPackages);
+		for(SysElement e : merged) {
+			if(e instanceof SysAspect) add((SysAspect)e);
+			else if(e instanceof SysClass) add((SysClass)e);
+			else if(e instanceof SysPackage) add((SysPackage)e);
+		}
+	}
+
 	public void add(SysPackage inner) {
 		if(!this.contains(inner)){
 			//			this.getPackages().add(inner);
@@ -237,6 +273,10 @@ public class SysPackage implements SysElement{
 
 	}
 
+	public void remove(SysAspect a) {
+		if(contains(a))aspects.remove(a.getName());
+	}
+
 	
 	public SysElement getMax(String called, String sig) {
 		assert(called.contains("."));
@@ -1,6 +1,5 @@
 package model;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -8,7 +7,7 @@ import java.util.StringTokenizer;
 public class SysRoot implements SysElement {
 	
 	private String pathToBin;
-	private HashMap<String, SysPackage> packages = new HashMap<String, SysPackage>();
+	private SnapshotMap<String, SysPackage> packages = new SnapshotMap<String, SysPackage>();
 
 	public SysRoot(){
 		//default constructor
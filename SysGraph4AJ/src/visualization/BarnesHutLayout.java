@@ -0,0 +1,196 @@
+package visualization;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * A force directed layout (Fruchterman-Reingold forces) for large graphs, e.g. the packages and their
+ * dependencies. The edges pull their ends together and every vertex pushes every other away; the pushes
+ * are approximated with a Barnes-Hut quadtree, where a far group of vertices pushes as a single one at its
+ * center, so an iteration costs n log n instead of the n squared of the layouts of JUNG. Graphs of tens of
+ * thousands of vertices are laid out in seconds.
+ * <br>
+ * The graph is only read. The layout stops early when its thread is interrupted, e.g. when the
+ * {@link gui.LayoutTask} running it is cancelled.
+ */
+public class BarnesHutLayout {
+
+	private static final int ITERATIONS = 60;
+	/**a group of vertices further than its size divided by THETA pushes as a single vertex*/
+	private static final double THETA = 1.0;
+
+	/**
+	 * @param initial where the vertices start, e.g. a tree layout of the graph, or null to start at random
+	 * @param distance the wanted length of the edges
+	 * @return a layout of the graph, whose graph is the graph
+	 */
+	public static <V, E> Layout<V, E> layout(Graph<V, E> graph, Layout<V, E> initial, int distance) {
+		final List<V> vertices = new ArrayList<V>(graph.getVertices());
+		int n = vertices.size();
+		Map<V, Integer> index = new HashMap<V, Integer>(n * 2);
+		for(int i = 0; i < n; i++) {
+			index.put(vertices.get(i), i);
+		}
+		List<int[]> edges = new ArrayList<int[]>(graph.getEdgeCount());
+		for(E e : graph.getEdges()) {
+			int a = index.get(graph.getEndpoints(e).getFirst());
+			int b = index.get(graph.getEndpoints(e).getSecond());
+			if(a != b) edges.add(new int[] {a, b});
+		}
+
+		//the vertices start in a square about as large as the result, the initial layout is scaled into it
+		double[] x = new double[n], y = new double[n];
+		double side = Math.sqrt(n + 1) * distance;
+		double scaleX = 1, scaleY = 1;
+		if(initial != null) {
+			scaleX = side / Math.max(initial.getSize().getWidth(), 1);
+			scaleY = side / Math.max(initial.getSize().getHeight(), 1);
+		}
+		Random random = new Random(n);
+		for(int i = 0; i < n; i++) {
+			Point2D p = initial != null && initial.getGraph().containsVertex(vertices.get(i)) ? initial.transform(vertices.get(i)) : null;
+			//a little noise, vertices in the same place would push each other nowhere
+			x[i] = (p != null ? p.getX() * scaleX : random.nextDouble() * side) + random.nextDouble();
+			y[i] = (p != null ? p.getY() * scaleY : random.nextDouble() * side) + random.nextDouble();
+		}
+
+		double k = distance;
+		double temperature = side / 10;
+		double[] dx = new double[n], dy = new double[n];
+		for(int iteration = 0; iteration < ITERATIONS && !Thread.currentThread().isInterrupted(); iteration++) {
+			Cell tree = Cell.of(x, y);
+			for(int i = 0; i < n; i++) {
+				dx[i] = 0;
+				dy[i] = 0;
+				tree.push(i, x, y, k * k, dx, dy);
+			}
+			for(int[] e : edges) {
+				double ex = x[e[0]] - x[e[1]], ey = y[e[0]] - y[e[1]];
+				double d = Math.max(Math.sqrt(ex * ex + ey * ey), 0.01);
+				double f = d / k; //d * d / k along the unit vector
+				dx[e[0]] -= ex * f;
+				dy[e[0]] -= ey * f;
+				dx[e[1]] += ex * f;
+				dy[e[1]] += ey * f;
+			}
+			for(int i = 0; i < n; i++) {
+				double d = Math.sqrt(dx[i] * dx[i] + dy[i] * dy[i]);
+				if(d > 0) {
+					double step = Math.min(d, temperature) / d;
+					x[i] += dx[i] * step;
+					y[i] += dy[i] * step;
+				}
+			}
+			temperature *= 0.93;
+		}
+
+		//the graph is moved to the top left corner
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = 0, maxY = 0;
+		for(int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			minY = Math.min(minY, y[i]);
+		}
+		final Map<V, Point2D> positions = new HashMap<V, Point2D>(n * 2);
+		for(int i = 0; i < n; i++) {
+			Point2D p = new Point2D.Double(x[i] - minX + distance, y[i] - minY + distance);
+			positions.put(vertices.get(i), p);
+			maxX = Math.max(maxX, p.getX());
+			maxY = Math.max(maxY, p.getY());
+		}
+		Dimension size = new Dimension((int)maxX + distance, (int)maxY + distance);
+		return new StaticLayout<V, E>(graph, new Transformer<V, Point2D>() {
+			public Point2D transform(V v) {
+				Point2D p = positions.get(v);
+				return p == null ? new Point2D.Double() : new Point2D.Double(p.getX(), p.getY());
+			}
+		}, size);
+	}
+
+	/**a square of the quadtree, with the number of vertices in it and their center*/
+	private static class Cell {
+		final double left, top, size;
+		int count = 0;
+		double centerX = 0, centerY = 0;
+		/**the vertex of a cell with a single vertex, -1 otherwise*/
+		int vertex = -1;
+		Cell[] children = null;
+
+		Cell(double left, double top, double size) {
+			this.left = left;
+			this.top = top;
+			this.size = size;
+		}
+
+		/**@return the quadtree of the given positions*/
+		static Cell of(double[] x, double[] y) {
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for(int i = 0; i < x.length; i++) {
+				minX = Math.min(minX, x[i]);
+				minY = Math.min(minY, y[i]);
+				maxX = Math.max(maxX, x[i]);
+				maxY = Math.max(maxY, y[i]);
+			}
+			Cell root = new Cell(minX, minY, Math.max(maxX - minX, maxY - minY) + 1);
+			for(int i = 0; i < x.length; i++) {
+				root.add(i, x, y, 0);
+			}
+			return root;
+		}
+
+		void add(int i, double[] x, double[] y, int depth) {
+			centerX = (centerX * count + x[i]) / (count + 1);
+			centerY = (centerY * count + y[i]) / (count + 1);
+			count++;
+			if(count == 1) {
+				vertex = i;
+				return;
+			}
+			if(depth > 40) return; //vertices at the same place stay together
+			if(children == null) {
+				children = new Cell[4];
+				int old = vertex;
+				vertex = -1;
+				child(old, x, y).add(old, x, y, depth + 1);
+			}
+			child(i, x, y).add(i, x, y, depth + 1);
+		}
+
+		private Cell child(int i, double[] x, double[] y) {
+			double half = size / 2;
+			int q = (x[i] >= left + half ? 1 : 0) + (y[i] >= top + half ? 2 : 0);
+			if(children[q] == null) {
+				children[q] = new Cell(left + (q % 2) * half, top + (q / 2) * half, half);
+			}
+			return children[q];
+		}
+
+		/**adds to dx, dy the push of the vertices of this cell on vertex i*/
+		void push(int i, double[] x, double[] y, double k2, double[] dx, double[] dy) {
+			if(count == 0 || vertex == i) return;
+			double ex = x[i] - centerX, ey = y[i] - centerY;
+			double d2 = ex * ex + ey * ey;
+			if(children == null || size * size < THETA * THETA * d2) {
+				d2 = Math.max(d2, 0.0001);
+				double f = k2 * count / d2; //k * k / d along the unit vector
+				dx[i] += ex * f;
+				dy[i] += ey * f;
+				return;
+			}
+			for(Cell c : children) {
+				if(c != null) c.push(i, x, y, k2, dx, dy);
+			}
+		}
+	}
+
+}
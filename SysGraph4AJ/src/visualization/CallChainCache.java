@@ -0,0 +1,156 @@
+package visualization;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections15.Transformer;
+
+import model.IElement;
+import model.SysMethod;
+import model.SysRoot;
+import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * The call chains built and laid out lately, shared by the call chain windows, so reopening a call chain, or
+ * opening it in another window, or going back to a depth seen before, does not build and lay it out again.
+ * A call chain is kept by its first method, its depth and its expanded methods, see {@link CallChainM2G}.
+ * <br>
+ * A call chain kept is only used while none of its methods changed: it remembers, for every method in it,
+ * whether it was analysed and how many calls and advice it had; the analysis only adds to them. Analysing
+ * other parts of the model does not throw it away.
+ * <br>
+ * The graphs are shared, every window gets its own copy of the positions to move the vertices around.
+ */
+public class CallChainCache {
+
+	/**the call chains kept, the least recently used is thrown away first*/
+	private static final int CAPACITY = 32;
+
+	private static final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(CAPACITY, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<Key, CallChainCache.Entry> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	/**
+	 * @param depth the levels of callees shown below m
+	 * @param expanded the methods whose callees are shown even if they are deeper, not changed afterwards
+	 * @return the call chain of m, laid out, from the cache when it is still up to date
+	 */
+	public static AggregateLayout<IElement, SysEdge> doAggregateLayout(SysRoot root, SysMethod m, int depth, Set<SysMethod> expanded) {
+		Key key = new Key(m, depth, expanded);
+		Entry entry;
+		synchronized(entries) {
+			entry = entries.get(key);
+		}
+		if(entry == null || !entry.isUpToDate()) {
+			//built out of the lock, two windows asking for the same call chain at once may both build it
+			entry = new Entry(new CallChainM2G(depth, expanded).layOut(root, m));
+			synchronized(entries) {
+				entries.put(key, entry);
+			}
+		}
+		return new AggregateLayout<IElement, SysEdge>(entry.copy());
+	}
+
+	/**throws away every call chain, e.g. when another project is opened*/
+	public static void clear() {
+		synchronized(entries) {
+			entries.clear();
+		}
+	}
+
+	private static class Key {
+		private final SysMethod method;
+		private final int depth;
+		private final Set<SysMethod> expanded;
+
+		Key(SysMethod method, int depth, Set<SysMethod> expanded) {
+			this.method = method;
+			this.depth = depth;
+			this.expanded = expanded;
+		}
+
+		public boolean equals(Object o) {
+			if(!(o instanceof Key)) return false;
+			Key k = (Key)o;
+			return method == k.method && depth == k.depth && expanded.size() == k.expanded.size() && expanded.containsAll(k.expanded);
+		}
+
+		public int hashCode() {
+			int hash = System.identityHashCode(method) * 31 + depth;
+			for(SysMethod m : expanded) {
+				hash += System.identityHashCode(m);
+			}
+			return hash;
+		}
+	}
+
+	private static class Entry {
+		private final Graph<IElement, SysEdge> graph;
+		private final Map<IElement, Point2D> positions;
+		private final Dimension size;
+		private final List<SysMethod> methods = new ArrayList<SysMethod>();
+		/**for every method, whether it was analysed, its calls and its advice when the call chain was built*/
+		private final int[] stamps;
+
+		Entry(Layout<IElement, SysEdge> layout) {
+			this.graph = layout.getGraph();
+			this.size = layout.getSize();
+			this.positions = new HashMap<IElement, Point2D>(graph.getVertexCount() * 2);
+			Set<SysMethod> seen = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
+			for(IElement v : graph.getVertices()) {
+				Point2D p = layout.transform(v);
+				positions.put(v, new Point2D.Double(p.getX(), p.getY()));
+				//the advice are methods too
+				if(v instanceof SysMethod && seen.add((SysMethod)v)) methods.add((SysMethod)v);
+			}
+			this.stamps = new int[methods.size() * 3];
+			for(int i = 0; i < methods.size(); i++) {
+				stamp(methods.get(i), i, stamps);
+			}
+		}
+
+		private static void stamp(SysMethod m, int i, int[] stamps) {
+			stamps[i * 3] = m.isAnalysed() ? 1 : 0;
+			stamps[i * 3 + 1] = m.getCalls().size();
+			stamps[i * 3 + 2] = m.getAffecters().size();
+		}
+
+		/**@return false if a method of the call chain changed since it was built*/
+		boolean isUpToDate() {
+			int[] now = new int[3];
+			for(int i = 0; i < methods.size(); i++) {
+				stamp(methods.get(i), 0, now);
+				if(now[0] != stamps[i * 3] || now[1] != stamps[i * 3 + 1] || now[2] != stamps[i * 3 + 2]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**@return a layout of the graph with its own positions*/
+		Layout<IElement, SysEdge> copy() {
+			return new StaticLayout<IElement, SysEdge>(graph, new Transformer<IElement, Point2D>() {
+				public Point2D transform(IElement v) {
+					Point2D p = positions.get(v);
+					return p == null ? new Point2D.Double() : new Point2D.Double(p.getX(), p.getY());
+				}
+			}, size);
+		}
+	}
+
+}
@@ -1,82 +1,133 @@
 package visualization;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import model.IElement;
 import model.SysAdvice;
 import model.SysMethod;
 import model.SysRoot;
-import analysis.MethodAnalysis;
 import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
-import edu.uci.ics.jung.algorithms.layout.TreeLayout;
+import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.graph.DelegateTree;
 import edu.uci.ics.jung.graph.Forest;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
 
-/**the class that constructs a call chain graph*/
+/**
+ * the class that constructs a call chain graph. The graph goes as deep as the given depth, breadth first, plus
+ * the callees of the expanded methods; the callees that are not shown are replaced by a {@link MoreStub}
+ */
 public class CallChainM2G {
 	
-	EspecialEdgesTable<IElement, Object> table = new EspecialEdgesTable<IElement, Object>();
+	EspecialEdgesTable table = new EspecialEdgesTable();
 	private int deltaX = 100;
 	private int deltaY = 80;
+	private final int depth;
+	private final Set<SysMethod> expanded;
 
-	/**constructs an AggregateLayout with the given SysMethod*/
-	public AggregateLayout<IElement, Object> doAggregateLayout( SysRoot root, SysMethod m) {
-		MethodAnalysis.analyseMethod(m, root);
-		DelegateTree<IElement, Object> dt = new DelegateTree<IElement, Object>();
+	/**a call chain with every callee known*/
+	public CallChainM2G() {
+		this(Integer.MAX_VALUE, Collections.<SysMethod>emptySet());
+	}
+
+	/**
+	 * @param depth the levels of callees shown below the first method
+	 * @param expanded the methods whose callees are shown even if they are deeper
+	 */
+	public CallChainM2G(int depth, Set<SysMethod> expanded) {
+		this.depth = depth;
+		this.expanded = expanded;
+	}
+
+	/**constructs an AggregateLayout with the given SysMethod. The methods must be analysed before, the graph
+	 * only shows the calls already in the model*/
+	public AggregateLayout<IElement, SysEdge> doAggregateLayout( SysRoot root, SysMethod m) {
+		return new AggregateLayout<IElement, SysEdge>(layOut(root, m));
+	}
+
+	/**@return the call chain of the given SysMethod, laid out. See {@link #doAggregateLayout(SysRoot, SysMethod)}*/
+	Layout<IElement, SysEdge> layOut(SysRoot root, SysMethod m) {
+		DelegateTree<IElement, SysEdge> dt = new DelegateTree<IElement, SysEdge>();
 		dt.addVertex(m);
 		dt = addChildToGraph(dt,m);
-		Forest<IElement, Object> df = ModelToGraph.tree_to_forest(dt);
-		AggregateLayout<IElement, Object> al = new AggregateLayout<IElement, Object>(new TreeLayout<IElement, Object>(df, deltaX, deltaY));
-		df=addEspecialEdges(df, table);
-		return al;
+		Forest<IElement, SysEdge> df = ModelToGraph.tree_to_forest(dt);
+		ModelToGraph.addEspecialEdges(df, table); //the calls that may break the tree structure
+		//with the special edges the call chain is no tree anymore, the layered layout places them too
+		return LayeredLayout.layout(df, deltaX, deltaY);
 	}
 	
 	
 	/**constructs a VisualizationViewer from an AggregateLayout*/
-	public VisualizationViewer<IElement, Object> makeVV(AggregateLayout<IElement, Object> al){
-		VisualizationViewer<IElement, Object> vv =new VisualizationViewer<IElement, Object>(al);		
+	public VisualizationViewer<IElement, SysEdge> makeVV(AggregateLayout<IElement, SysEdge> al){
+		VisualizationViewer<IElement, SysEdge> vv =new VisualizationViewer<IElement, SysEdge>(al);		
 		return vv;
 	}
 	
-	/**add the vertex that may broke a tree structure*/
-	private static Forest<IElement, Object> addEspecialEdges(Forest<IElement, Object> df, EspecialEdgesTable<IElement, Object> table) {
-		Iterator<IElement> from = table.getFrom().iterator();
-		Iterator<IElement> to = table.getTo().iterator();
-		Iterator<Object> edge = table.getEdge().iterator();
-		while(from.hasNext() && to.hasNext() && edge.hasNext()){
-			//df.addEdge(df.getEdgeCount()+1.5f, from.next(), to.next());
-			df.addEdge(((Float)edge.next())+0.5f, from.next(), to.next());
-		}
-		return df;
-	}
-
-	/**add the caller child to the graph*/
-	public DelegateTree<IElement, Object> addChildToGraph(DelegateTree<IElement, Object> g, SysMethod caller){
-		for(SysMethod m : caller.getCalls()){
-			if(g.containsVertex(m)){
-				this.table.add(g.getEdgeCount()*1.0f+1.0f+this.table.size(), caller, m);
-			} else {
-				//g.addChild(g.getVertexCount()*1.0f+1.5f, caller, m);
-				g.addChild(g.getEdgeCount()*1.0f+1.5f+this.table.size(), caller, m);
-				g = addChildToGraph(g,m);//recursive call to complete the graph and add the needed edges to the table
+	/**
+	 * add the callees of the caller to the graph, breadth first so every method is at its shortest distance
+	 * from the caller. The calls to methods already in the graph go to the table
+	 */
+	public DelegateTree<IElement, SysEdge> addChildToGraph(DelegateTree<IElement, SysEdge> g, SysMethod caller){
+		List<SysMethod> pending = new ArrayList<SysMethod>();
+		List<Integer> levels = new ArrayList<Integer>();
+		pending.add(caller);
+		levels.add(0);
+		for(int i = 0; i < pending.size(); i++){
+			SysMethod method = pending.get(i);
+			int level = levels.get(i);
+			boolean hidden = level >= depth && !expanded.contains(method);
+			if(isAnalysable(method)){
+				addStub(g, new MoreStub(method, -1)); //its callees are not known yet
+			} else if(hidden){
+				int count = countHidden(g, method);
+				if(count > 0) addStub(g, new MoreStub(method, count));
 			}
-		}
-		for(SysAdvice ad : caller.getAffecters()){
-			if(g.containsVertex(ad)){
-				this.table.add(g.getEdgeCount()*1.0f+1.0f+this.table.size(), caller, ad);
-			} else {
-				//g.addChild(g.getVertexCount()*1.0f+1.5f, caller, ad);
-				g.addChild(g.getEdgeCount()*1.0f+1.5f + this.table.size(), caller, ad);
-				g = addChildToGraph(g,ad);//recursive call to complete the graph and add the needed edges to the table
+			if(hidden) continue;
+			for(SysMethod m : method.getCalls()){
+				if(g.containsVertex(m)){
+					this.table.add(SysEdge.call(method, m));
+				} else {
+					g.addChild(SysEdge.call(method, m), method, m);
+					pending.add(m);
+					levels.add(level + 1);
+				}
+			}
+			for(SysAdvice ad : method.getAffecters()){
+				if(g.containsVertex(ad)){
+					this.table.add(SysEdge.advice(method, ad));
+				} else {
+					g.addChild(SysEdge.advice(method, ad), method, ad);
+					pending.add(ad);
+					levels.add(level + 1);
+				}
 			}
 		}
 		return g;
 		
 	}
-	
-	
 
+	/**@return true for the methods not analysed yet, constructors can not be analysed*/
+	private static boolean isAnalysable(SysMethod method){
+		return !method.isAnalysed() && method.getMethod() != null;
+	}
 
+	/**@return the callees and advice of the method not in the graph, the ones shown elsewhere in the chain are not counted*/
+	private static int countHidden(DelegateTree<IElement, SysEdge> g, SysMethod method){
+		Set<SysMethod> hidden = new HashSet<SysMethod>();
+		for(SysMethod m : method.getCalls()){
+			if(!g.containsVertex(m)) hidden.add(m);
+		}
+		for(SysAdvice ad : method.getAffecters()){
+			if(!g.containsVertex(ad)) hidden.add(ad);
+		}
+		return hidden.size();
+	}
+
+	private static void addStub(DelegateTree<IElement, SysEdge> g, MoreStub stub){
+		g.addChild(SysEdge.contains(stub.getMethod(), stub), stub.getMethod(), stub);
+	}
 
 }
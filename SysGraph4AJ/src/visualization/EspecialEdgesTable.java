@@ -1,49 +1,47 @@
 package visualization;
 
-import java.util.Vector;
-
-/** */
-public class EspecialEdgesTable<V, E> {
-
-	Vector<V> from = new Vector<V>();
-	Vector<V> to = new Vector<V>();
-	Vector<E> edge = new Vector<E>();
-
-	public void add(E e, V from, V to){
-		this.from.add(from);
-		this.to.add(to);
-		this.edge.add(e);
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The special edges of a graph, the ones that break its tree: calls and advice. The edges are kept in the
+ * order they were added; adding and removing an edge take constant time.
+ */
+public class EspecialEdgesTable implements Iterable<SysEdge> {
+
+	private final Set<SysEdge> edges = new LinkedHashSet<SysEdge>();
+
+	public void add(SysEdge e){
+		edges.add(e);
+	}
 
+	public void remove(SysEdge e){
+		edges.remove(e);
 	}
 
-	public void remove(E e, V from, V to){
-		if(this.from.contains(from) && this.edge.contains(e) && this.to.contains(to)){
-			this.from.remove(from);
-			this.to.remove(to);
-			this.edge.remove(e);
+	public void add(EspecialEdgesTable especialEdges) {
+		if(especialEdges!=null){
+			edges.addAll(especialEdges.edges);
 		}
 	}
 
-	public Vector<V> getFrom(){return from;}
-	public Vector<V> getTo(){return to;}
-	public Vector<E> getEdge(){return edge;}
+	public boolean contains(SysEdge e){
+		return edges.contains(e);
+	}
 
-	public void add(EspecialEdgesTable<V, E> especialEdges) {
-		if(especialEdges!=null){
-			Vector<V> from = especialEdges.getFrom();
-			Vector<V> to = especialEdges.getTo();
-			Vector<E> edge = especialEdges.getEdge();
-			if(from.size()==to.size() && to.size()==edge.size()){
-				for(int i=0;i<from.size();i++){
-					this.from.add(from.get(i));
-					this.to.add(to.get(i));
-					this.edge.add(edge.get(i));
-				}
-			}
-		}
+	/**@return the edges, which can not be changed through it*/
+	public Collection<SysEdge> getEdges(){
+		return Collections.unmodifiableSet(edges);
 	}
-	
+
+	public Iterator<SysEdge> iterator() {
+		return getEdges().iterator();
+	}
+
 	public int size(){
-		return edge.size();
+		return edges.size();
 	}
 }
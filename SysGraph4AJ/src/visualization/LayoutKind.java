@@ -0,0 +1,47 @@
+package visualization;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.Forest;
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * The layouts a graph of the model can be shown with. The tree layout only places the edges of the tree and
+ * draws the others over it; the other layouts place every edge.
+ */
+public enum LayoutKind {
+
+	/**the tree of the model, see {@link ParallelTreeLayout}*/
+	TREE("Tree"),
+	/**callers above the methods they call, see {@link LayeredLayout}*/
+	LAYERED("Layered"),
+	/**related elements near each other, see {@link BarnesHutLayout}*/
+	FORCE("Force-directed");
+
+	private final String name;
+
+	private LayoutKind(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param tree the tree of the graph
+	 * @param graph the whole graph, the tree and the edges drawn over it. Null for {@link #TREE}.
+	 * @return a layout of the tree for {@link #TREE}, of the graph otherwise
+	 */
+	public <V, E> Layout<V, E> layout(Forest<V, E> tree, Graph<V, E> graph, int distX, int distY) {
+		switch(this) {
+		case LAYERED:
+			return LayeredLayout.layout(graph, distX, distY);
+		case FORCE:
+			//starting from the tree, the force layout only has to untangle the other edges
+			return BarnesHutLayout.layout(graph, ParallelTreeLayout.layout(tree, distX, distY), distX);
+		default:
+			return ParallelTreeLayout.layout(tree, distX, distY);
+		}
+	}
+
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,169 @@
+package visualization;
+
+import java.awt.geom.Point2D;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import model.IElement;
+import model.SysElement;
+import model.SysMethod;
+import model.SysPointcut;
+import model.SysRoot;
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.Forest;
+
+/**
+ * The positions of the vertices of a project, kept from one run to the next in a small file of the user,
+ * ~/.sysgraph4aj/layouts, one per project. Every line has the position of an element and the element, by
+ * its kind and fully qualified name, so the positions are found again in the model of a later analysis.
+ * The pointcuts, which have a name of their own only in an advice, are named after their parent in the tree,
+ * the aspect. The vertices with no identity out of the model, e.g. the nodes of the control flow graphs, are
+ * not kept.
+ * <br>
+ * The positions are read when the store is opened; {@link #record(Layout, Forest)} adds the positions of a layout,
+ * including the vertices moved by the user, and {@link #save()} writes them all. Not thread safe.
+ */
+public class LayoutStore {
+
+	private static final File DIRECTORY = new File(new File(System.getProperty("user.home"), ".sysgraph4aj"), "layouts");
+
+	/**the file of the project, null when the project has no path*/
+	private final File file;
+	private final Map<String, Point2D> positions = new HashMap<String, Point2D>();
+
+	private LayoutStore(File file) {
+		this.file = file;
+		if(file != null && file.isFile()) {
+			load();
+		}
+	}
+
+	/**@return the positions kept for the project of the given root, none if it was never saved*/
+	public static LayoutStore of(SysRoot root) {
+		String path = root.getPath();
+		if(path == null) {
+			return new LayoutStore(null);
+		}
+		File project = new File(path).getAbsoluteFile();
+		String name = project.getParentFile() != null ? project.getParentFile().getName() + "-" + project.getName() : project.getName();
+		name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+		return new LayoutStore(new File(DIRECTORY, name + "-" + Integer.toHexString(project.getPath().hashCode()) + ".txt"));
+	}
+
+	/**
+	 * @param parent the parent of the element in the tree, null for a root
+	 * @return the kept position of the element, null if it has none
+	 */
+	public Point2D get(IElement e, IElement parent) {
+		String key = key(e, parent);
+		Point2D p = key == null ? null : positions.get(key);
+		return p == null ? null : new Point2D.Double(p.getX(), p.getY());
+	}
+
+	public boolean isEmpty() {
+		return positions.isEmpty();
+	}
+
+	/**
+	 * keeps the positions of the vertices of the layout, the ones kept before for other elements stay. The
+	 * elements that can not be told apart by their name and their parent are not kept.
+	 * @param tree the tree of the vertices, which gives their parents
+	 */
+	public void record(Layout<IElement, ?> layout, Forest<IElement, ?> tree) {
+		Map<String, Point2D> recorded = new HashMap<String, Point2D>();
+		Set<String> ambiguous = new HashSet<String>();
+		for(IElement v : layout.getGraph().getVertices()) {
+			String key = key(v, tree.containsVertex(v) ? tree.getParent(v) : null);
+			if(key != null) {
+				Point2D p = layout.transform(v);
+				if(recorded.put(key, new Point2D.Double(p.getX(), p.getY())) != null) {
+					ambiguous.add(key);
+				}
+			}
+		}
+		positions.putAll(recorded);
+		positions.keySet().removeAll(ambiguous);
+	}
+
+	/**writes the positions to the file of the project, replacing it whole*/
+	public void save() {
+		if(file == null) return;
+		File temporary = new File(file.getPath() + ".tmp");
+		try {
+			DIRECTORY.mkdirs();
+			PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+			try {
+				for(Map.Entry<String, Point2D> e : positions.entrySet()) {
+					w.println(e.getValue().getX() + "\t" + e.getValue().getY() + "\t" + e.getKey());
+				}
+			} finally {
+				w.close();
+			}
+			if(w.checkError()) {
+				throw new IOException("could not write " + temporary);
+			}
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch(IOException e) {
+			System.err.println("[LayoutStore]: could not save the positions to \"" + file + "\": " + e);
+			temporary.delete();
+		}
+	}
+
+	private void load() {
+		try {
+			BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				for(String line = r.readLine(); line != null; line = r.readLine()) {
+					String[] fields = line.split("\t", 3);
+					if(fields.length < 3) continue;
+					try {
+						positions.put(fields[2], new Point2D.Double(Double.parseDouble(fields[0]), Double.parseDouble(fields[1])));
+					} catch(NumberFormatException e) {
+						//a damaged line, the element is laid out again
+					}
+				}
+			} finally {
+				r.close();
+			}
+		} catch(IOException e) {
+			System.err.println("[LayoutStore]: could not read the positions from \"" + file + "\": " + e);
+			positions.clear();
+		}
+	}
+
+	/**@return the identity of the element in the file, null for the vertices that are not kept*/
+	private static String key(IElement e, IElement parent) {
+		if(e instanceof SysRoot) {
+			return "SysRoot";
+		}
+		if(!(e instanceof SysElement)) {
+			return null;
+		}
+		String name;
+		if(e instanceof SysPointcut) {
+			//the pointcuts have an owner only once they are in an advice, the same name is found in several aspects
+			if(!(parent instanceof SysElement)) return null;
+			name = ((SysElement)parent).getFullyQualifiedName() + "." + ((SysPointcut)e).getName();
+		} else {
+			name = ((SysElement)e).getFullyQualifiedName();
+		}
+		String key = e.getClass().getSimpleName() + " " + name;
+		if(e instanceof SysMethod) {
+			key += " " + e; //the overloads differ in the signature only
+		}
+		return key;
+	}
+
+}
@@ -0,0 +1,332 @@
+package visualization;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import model.IElement;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.DelegateForest;
+import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
+import edu.uci.ics.jung.graph.Forest;
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * The forest shown in the main window: the tree of the model and of the CFGs, plus the edges drawn over it
+ * (calls, advice and the references between CFG nodes).
+ * <br>
+ * The edges of the tree are added with {@link #addChild(IElement, IElement)} and are also kept in a
+ * forest of their own, so the tree can be laid out and changed without the other edges getting in the way.
+ * Every other edge is added with addEdge. The forest is changed in place when the model changes, so the
+ * window keeps the same graph, viewer and transformers from one analysis to the next.
+ */
+public class ModelForest extends DelegateForest<IElement, SysEdge> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DelegateForest<IElement, SysEdge> tree = new DelegateForest<IElement, SysEdge>();
+	/**the last layout of the tree*/
+	private Layout<IElement, SysEdge> treeLayout = null;
+	/**the vertices added to the tree since it was last laid out*/
+	private final List<IElement> added = new ArrayList<IElement>();
+	/**the positions given by {@link #placeAdded(int, int)} since the tree was last laid out*/
+	private final Map<IElement, Point2D> placed = new HashMap<IElement, Point2D>();
+	/**the x of the vertices placed, by their rounded y, so new subtrees are not put over them; null until needed*/
+	private Map<Long, TreeSet<Double>> occupied = null;
+
+	public boolean addVertex(IElement vertex) {
+		tree.addVertex(vertex);
+		return super.addVertex(vertex);
+	}
+
+	/**adds the child, which must not be in the forest yet, under the parent in the tree*/
+	public void addChild(IElement parent, IElement child) {
+		addChild(SysEdge.contains(parent, child));
+	}
+
+	/**adds the edge to the tree, its target must not be in the forest yet*/
+	public void addChild(SysEdge edge) {
+		IElement parent = edge.getFrom(), child = edge.getTo();
+		tree.addEdge(edge, parent, child);
+		super.addEdge(edge, parent, child);
+		added.add(child);
+	}
+
+	/**adds an edge drawn over the tree, e.g. a call*/
+	public boolean addEdge(SysEdge edge) {
+		return super.addEdge(edge, edge.getFrom(), edge.getTo());
+	}
+
+	/**@return the children of the vertex in the tree, without the vertices it only calls or advises*/
+	public ArrayList<IElement> getTreeChildren(IElement vertex) {
+		if(!tree.containsVertex(vertex)) return new ArrayList<IElement>();
+		return new ArrayList<IElement>(tree.getChildren(vertex));
+	}
+
+	/**@return the tree alone, which must not be changed*/
+	public Forest<IElement, SysEdge> getTree() {
+		return tree;
+	}
+
+	/**
+	 * Removes the vertex and, when removeSubtree is true, everything below it in the tree. The vertices it
+	 * calls or advises stay, only the edges to them go.
+	 */
+	public boolean removeVertex(IElement vertex, boolean removeSubtree) {
+		if(!containsVertex(vertex)) return false;
+		if(removeSubtree) {
+			for(IElement child : getTreeChildren(vertex)) {
+				removeVertex(child, true);
+			}
+		}
+		if(occupied != null && isPlaced(vertex)) {
+			Point2D p = position(vertex);
+			TreeSet<Double> row = occupied.get(Math.round(p.getY()));
+			if(row != null) row.remove(p.getX());
+		}
+		tree.removeVertex(vertex, false);
+		placed.remove(vertex);
+		return super.removeVertex(vertex, false);
+	}
+
+	/**@return a copy of the tree, to be laid out while the forest keeps changing*/
+	public DelegateForest<IElement, SysEdge> snapshotTree() {
+		DelegateForest<IElement, SysEdge> snapshot = new DelegateForest<IElement, SysEdge>();
+		for(IElement v : tree.getVertices()) {
+			snapshot.addVertex(v);
+		}
+		for(SysEdge e : tree.getEdges()) {
+			snapshot.addEdge(e, tree.getSource(e), tree.getDest(e));
+		}
+		return snapshot;
+	}
+
+	/**@return a copy of the whole forest, with the edges drawn over the tree, to be laid out while the forest keeps changing*/
+	public Graph<IElement, SysEdge> snapshot() {
+		Graph<IElement, SysEdge> snapshot = new DirectedSparseMultigraph<IElement, SysEdge>();
+		for(IElement v : getVertices()) {
+			snapshot.addVertex(v);
+		}
+		for(SysEdge e : getEdges()) {
+			snapshot.addEdge(e, getSource(e), getDest(e));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return a tree layout of the whole forest, with the edges drawn over the tree placed by the tree. The tree
+	 * is laid out from a snapshot, so the vertices added later are not taken as placed.
+	 */
+	public Layout<IElement, SysEdge> layout(int distX, int distY) {
+		return layout(ParallelTreeLayout.layout(snapshotTree(), distX, distY));
+	}
+
+	/**
+	 * @param treeLayout a layout of the tree, or of a snapshot of the tree or of the forest, e.g. a
+	 * {@link LayeredLayout}. It becomes the layout of the forest.
+	 * @return a layout of the whole forest with the positions of the tree layout. The vertices added after the
+	 * snapshot are drawn on their parent until the forest is laid out again.
+	 */
+	public Layout<IElement, SysEdge> layout(Layout<IElement, SysEdge> treeLayout) {
+		this.treeLayout = treeLayout;
+		occupied = null;
+		//the vertices added after the snapshot keep what they had
+		for(Iterator<IElement> i = added.iterator(); i.hasNext();) {
+			if(treeLayout.getGraph().containsVertex(i.next())) i.remove();
+		}
+		for(Iterator<IElement> i = placed.keySet().iterator(); i.hasNext();) {
+			if(treeLayout.getGraph().containsVertex(i.next())) i.remove();
+		}
+		return new StaticLayout<IElement, SysEdge>(this, new Positions(treeLayout), treeLayout.getSize());
+	}
+
+	/**@return a layout with the positions of the last tree layout, shown while the forest is laid out again.
+	 * Null if the forest was never laid out.*/
+	public Layout<IElement, SysEdge> layout() {
+		if(treeLayout == null) return null;
+		return new StaticLayout<IElement, SysEdge>(this, new Positions(treeLayout), treeLayout.getSize());
+	}
+
+	/**
+	 * Places the subtrees added since the last layout below their parent, to the right of its other children
+	 * and of any vertex in the way, and keeps the position of every other vertex, so the graph does not move
+	 * when an element is expanded. The cost is proportional to the vertices added, not to the forest, except
+	 * the first time after a layout, when the positions taken are collected. Get the positions with
+	 * {@link #layout()}.
+	 * @return false if the forest was never laid out, then it must be laid out whole
+	 */
+	public boolean placeAdded(int distX, int distY) {
+		if(treeLayout == null) return false;
+		//the added vertices whose parent has a position are the roots of the new subtrees
+		Map<IElement, List<IElement>> subtrees = new LinkedHashMap<IElement, List<IElement>>();
+		for(IElement v : added) {
+			if(!tree.containsVertex(v) || isPlaced(v)) continue;
+			IElement parent = tree.getParent(v);
+			if(parent == null || !isPlaced(parent)) continue; //placed with its parent
+			List<IElement> roots = subtrees.get(parent);
+			if(roots == null) {
+				roots = new ArrayList<IElement>();
+				subtrees.put(parent, roots);
+			}
+			roots.add(v);
+		}
+		added.clear();
+		if(occupied == null) {
+			occupied = new HashMap<Long, TreeSet<Double>>();
+			for(IElement v : tree.getVertices()) {
+				if(isPlaced(v)) occupy(position(v));
+			}
+		}
+
+		Map<IElement, Integer> widths = new HashMap<IElement, Integer>();
+		for(Map.Entry<IElement, List<IElement>> e : subtrees.entrySet()) {
+			Point2D p = position(e.getKey());
+			int width = 0;
+			for(IElement v : e.getValue()) {
+				width += width(v, distX, widths);
+			}
+			double left = p.getX() - width / 2.0;
+			for(IElement child : tree.getChildren(e.getKey())) {
+				if(!widths.containsKey(child)) { //a child that was there before
+					left = Math.max(left, position(child).getX() + distX / 2.0);
+				}
+			}
+			for(IElement v : e.getValue()) {
+				while(!isFree(v, left, p.getY() + distY, distX, distY, widths)) {
+					left += distX;
+				}
+				place(v, left, p.getY() + distY, distY, widths);
+				left += widths.get(v);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gives the vertices their positions in the store, e.g. the ones they had when the project was last closed,
+	 * and places the vertices with no position as {@link #placeAdded(int, int)} does, below their parent. Only
+	 * the vertices whose parent has a position in the store can keep theirs, the others are placed with their
+	 * parent. Get the positions with {@link #layout()}.
+	 * @return false if no root of the tree has a position in the store, then the forest must be laid out whole
+	 */
+	public boolean restore(LayoutStore store, int distX, int distY) {
+		final Map<IElement, Point2D> kept = new HashMap<IElement, Point2D>();
+		Graph<IElement, SysEdge> known = new DirectedSparseMultigraph<IElement, SysEdge>();
+		List<IElement> pending = new ArrayList<IElement>(tree.getRoots());
+		double width = 0, height = 0;
+		for(int i = 0; i < pending.size(); i++) {
+			IElement v = pending.get(i);
+			Point2D p = store.get(v, tree.getParent(v));
+			if(p == null) continue;
+			kept.put(v, p);
+			known.addVertex(v);
+			pending.addAll(tree.getChildren(v));
+			width = Math.max(width, p.getX() + distX);
+			height = Math.max(height, p.getY() + distY);
+		}
+		if(kept.isEmpty()) return false;
+		treeLayout = new StaticLayout<IElement, SysEdge>(known, new Transformer<IElement, Point2D>() {
+			public Point2D transform(IElement v) {
+				Point2D p = kept.get(v);
+				return p == null ? new Point2D.Double() : new Point2D.Double(p.getX(), p.getY());
+			}
+		}, new Dimension((int)width, (int)height));
+		added.clear();
+		placed.clear();
+		occupied = null;
+		for(IElement v : tree.getVertices()) {
+			if(!kept.containsKey(v)) added.add(v);
+		}
+		return placeAdded(distX, distY);
+	}
+
+	private boolean isPlaced(IElement v) {
+		return placed.containsKey(v) || treeLayout.getGraph().containsVertex(v);
+	}
+
+	private Point2D position(IElement v) {
+		Point2D p = placed.get(v);
+		return p != null ? p : treeLayout.transform(v);
+	}
+
+	/**@return the width of the subtree of v, distX for every leaf*/
+	private int width(IElement v, int distX, Map<IElement, Integer> widths) {
+		int width = 0;
+		for(IElement child : tree.getChildren(v)) {
+			width += width(child, distX, widths);
+		}
+		width = Math.max(width, distX);
+		widths.put(v, width);
+		return width;
+	}
+
+	/**@return true if no vertex is closer than distX/2 to the ones the subtree of v would have, see {@link #place(IElement, double, double, int, Map)}*/
+	private boolean isFree(IElement v, double left, double y, int distX, int distY, Map<IElement, Integer> widths) {
+		TreeSet<Double> row = occupied.get(Math.round(y));
+		double x = left + widths.get(v) / 2.0;
+		if(row != null && !row.subSet(x - distX / 2.0, false, x + distX / 2.0, false).isEmpty()) {
+			return false;
+		}
+		for(IElement child : tree.getChildren(v)) {
+			if(!isFree(child, left, y + distY, distX, distY, widths)) return false;
+			left += widths.get(child);
+		}
+		return true;
+	}
+
+	private void occupy(Point2D p) {
+		TreeSet<Double> row = occupied.get(Math.round(p.getY()));
+		if(row == null) {
+			row = new TreeSet<Double>();
+			occupied.put(Math.round(p.getY()), row);
+		}
+		row.add(p.getX());
+	}
+
+	/**puts v over the middle of its subtree, which starts at left*/
+	private void place(IElement v, double left, double y, int distY, Map<IElement, Integer> widths) {
+		Point2D p = new Point2D.Double(left + widths.get(v) / 2.0, y);
+		placed.put(v, p);
+		occupy(p);
+		for(IElement child : tree.getChildren(v)) {
+			place(child, left, y + distY, distY, widths);
+			left += widths.get(child);
+		}
+	}
+
+	/**
+	 * The positions given by the tree layout and by {@link ModelForest#placeAdded(int, int)}. The vertices that
+	 * have none yet are put on their parent.
+	 */
+	private class Positions implements Transformer<IElement, Point2D> {
+		private final Layout<IElement, SysEdge> treeLayout;
+
+		Positions(Layout<IElement, SysEdge> treeLayout) {
+			this.treeLayout = treeLayout;
+		}
+
+		public Point2D transform(IElement v) {
+			for(IElement e = v; e != null; e = tree.containsVertex(e) ? tree.getParent(e) : null) {
+				Point2D p = placed.get(e);
+				if(p == null && treeLayout.getGraph().containsVertex(e)) {
+					p = treeLayout.transform(e);
+				}
+				if(p != null) {
+					return new Point2D.Double(p.getX(), p.getY());
+				}
+			}
+			return new Point2D.Double();
+		}
+	}
+
+}
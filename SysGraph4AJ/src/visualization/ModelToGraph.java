@@ -1,11 +1,11 @@
 package visualization;
 
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import model.IElement;
 import model.SysAdvice;
-import model.SysAspect;
-import model.SysClass;
 import model.SysElement;
 import model.SysMethod;
 import model.SysPackage;
@@ -13,138 +13,125 @@ import model.SysRoot;
 import edu.uci.ics.jung.graph.DelegateForest;
 import edu.uci.ics.jung.graph.DelegateTree;
 import edu.uci.ics.jung.graph.Forest;
-import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.util.Pair;
 
 public class ModelToGraph {
 
-	public static DelegateTree<IElement, Float> delegateTree_justFirstChildren(IElement root) {
-		DelegateTree<IElement, Float> dt = new DelegateTree<IElement, Float>();
+	public static DelegateTree<IElement, SysEdge> delegateTree_justFirstChildren(IElement root) {
+		DelegateTree<IElement, SysEdge> dt = new DelegateTree<IElement, SysEdge>();
 		dt.addVertex(root);
 		for(IElement e : root.getChildElements())
-			dt.addChild((float)dt.getEdgeCount(), root, e);
+			dt.addChild(SysEdge.contains(root, e), root, e);
 				return dt;
 	}
 
-	public static DelegateTree<IElement, Object> delegateTree_fullGraph(IElement root) {
-		DelegateTree<IElement, Object> dt = new DelegateTree<IElement, Object>();
+	public static DelegateTree<IElement, SysEdge> delegateTree_fullGraph(IElement root) {
+		DelegateTree<IElement, SysEdge> dt = new DelegateTree<IElement, SysEdge>();
 		dt.addVertex(root);
 		dt = putAllChildren(dt, root);
 		return dt;
 	}
 
-	public static DelegateTree<IElement, Object> putAllChildren_SysRoot(DelegateTree<IElement, Object> dt, SysRoot e){
+	public static DelegateTree<IElement, SysEdge> putAllChildren_SysRoot(DelegateTree<IElement, SysEdge> dt, SysRoot e){
 		if(e != null){
 			for(SysElement e1 : e.getPackages()){
-				dt.addChild((float)dt.getEdgeCount(), e, e1);
+				dt.addChild(SysEdge.contains(e, e1), e, e1);
 				dt = putAllChildren(dt, e1);
 			}
 		}
 		return dt;
 	}
 
-	public static DelegateTree<IElement, Object> putAllChildren(DelegateTree<IElement, Object> dt, IElement e){
+	public static DelegateTree<IElement, SysEdge> putAllChildren(DelegateTree<IElement, SysEdge> dt, IElement e){
 		if(e != null){
 			
 			for(IElement e1 : e.getChildElements()){
-				dt.addChild((float)dt.getEdgeCount(), e, e1);
+				dt.addChild(SysEdge.contains(e, e1), e, e1);
 				dt = putAllChildren(dt, e1);
 			}
 		}
 		return dt;
 	}
 
-	public static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysRoot r, Graph g){
-		if(r!=null){
-			EspecialEdgesTable<IElement, Object> et = new EspecialEdgesTable<IElement, Object>();
-			for(SysPackage p : r.getPackages()){
-				et.add(getEspecialEdges(p,g));
-			}
-			return et;
-		}
-		else return null;
-	}
-
-	private static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysPackage pack, Graph g) {
-		if(pack!=null){
-			EspecialEdgesTable<IElement, Object> et = new EspecialEdgesTable<IElement, Object>();
-			for(SysPackage p : pack.getPackages()){
-				et.add(getEspecialEdges(p,g));
+	/**
+	 * Brings the forest up to date with the model below the given element, after the element was analysed:
+	 * adds the elements found since the forest was built, removes the ones that are no longer in the model and
+	 * adds the calls and advice of the methods below the element. The rest of the forest is not visited, so the
+	 * forest of the whole model is built by updating it from the root.
+	 */
+	public static void updateForest(ModelForest f, SysRoot root, IElement changed){
+		if(!f.containsVertex(root)) f.addVertex(root);
+		if(!(changed instanceof SysElement) || !addToForest(f, root, changed)) return; //e.g. a CFG node
+		List<SysMethod> methods = new ArrayList<SysMethod>();
+		updateChildren(f, root, changed, methods);
+		for(SysMethod m : methods){
+			for(SysMethod s : m.getCalls()){
+				addDependencyEdge(f, root, SysEdge.call(m, s));
 			}
-			for(SysClass c : pack.getClasses()){
-				et.add(getEspecialEdges(c,g));
+			if(m instanceof SysAdvice){
+				for(SysMethod me : ((SysAdvice) m).getAffecteds()){
+					addDependencyEdge(f, root, SysEdge.advice(m, me));
+				}
 			}
-			for(SysAspect a : pack.getAspects()){
-				et.add(getEspecialEdges(a,g));
+			for(SysAdvice ad : m.getAffecters()){
+				addDependencyEdge(f, root, SysEdge.advice(ad, m));
 			}
-			return et;
 		}
-		return null;
 	}
 
-	private static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysAspect c, Graph g) {
-		EspecialEdgesTable<IElement, Object> e = getEspecialEdges((SysClass) c, g);
-		if(e==null) e = new EspecialEdgesTable<IElement, Object>();
-		for(SysAdvice ad : c.getAdvice()){
-			e.add(getEspecialEdges(ad,g));
+	private static void updateChildren(ModelForest f, SysRoot root, IElement e, List<SysMethod> methods){
+		Set<? extends IElement> children = e == root ? root.getPackages() : e.getChildElements();
+		for(IElement shown : f.getTreeChildren(e)){
+			if(shown instanceof SysElement && !children.contains(shown)) f.removeVertex(shown, true);
 		}
-		return e;
-	}
-
-	private static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysClass c, Graph g) {
-		if(c!=null){
-			EspecialEdgesTable<IElement, Object> et = new EspecialEdgesTable<IElement, Object>();
-			for(SysMethod m : c.getMethods()){
-				et.add(getEspecialEdges(m,g));
-			}
-			return et;
+		for(IElement child : children){
+			if(!f.getTree().containsVertex(child)) f.addChild(e, child);
+			updateChildren(f, root, child, methods);
 		}
-		return null;
+		if(e instanceof SysMethod) methods.add((SysMethod) e);
 	}
 
-	private static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysMethod m, Graph g) {
-		if(m!=null){
-			EspecialEdgesTable<IElement, Object> et = new EspecialEdgesTable<IElement, Object>();
-			for(SysMethod s : m.getCalls()){
-				et.add((float)g.getEdgeCount()+1,m,s);
-			}
-			return et;
+	/**
+	 * Adds the element to the tree of the forest, with its owners that are not there yet.
+	 * @return false if the element is not under the root, e.g. a method of a library
+	 */
+	public static boolean addToForest(ModelForest f, SysRoot root, IElement element){
+		if(element == root || f.getTree().containsVertex(element)) return true;
+		IElement owner = element.getOwner();
+		if(owner == null){
+			if(!(element instanceof SysPackage)) return false;
+			owner = root; //top level packages have no owner
 		}
-		return null;
+		if(!addToForest(f, root, owner)) return false;
+		f.addChild(owner, element);
+		return true;
 	}
 
-	private static EspecialEdgesTable<IElement, Object> getEspecialEdges(SysAdvice m, Graph g) {
-		EspecialEdgesTable<IElement, Object> e = getEspecialEdges((SysMethod)m,g);
-		if(e==null) e= new EspecialEdgesTable<IElement,Object>();
-		for(SysMethod me: m.getAffecteds()){
-			e.add((float)g.getEdgeCount()+1, m, me);
-		}
-		return e;
+	/**adds the edge with its ends, unless an end is not under the root: it would be a stray vertex, without a place in the tree*/
+	private static void addDependencyEdge(ModelForest f, SysRoot root, SysEdge edge){
+		if(!addToForest(f, root, edge.getFrom()) || !addToForest(f, root, edge.getTo())) return;
+		if(f.findEdge(edge.getFrom(), edge.getTo()) == null) f.addEdge(edge);
 	}
 
-	public static void addEspecialEdges(Forest<IElement, Object> f, EspecialEdgesTable<IElement, Object> et){
+	/**adds the edges of the table to the forest, e.g. the calls that would break the tree of a call chain*/
+	public static void addEspecialEdges(Forest<IElement, SysEdge> f, EspecialEdgesTable et){
 		if(et!=null && f!=null){
-			Vector<IElement> from = et.getFrom();
-			Vector<IElement> to = et.getTo();
-			Vector<Object> edge = et.getEdge();
-			for(int i = 0; i < edge.size(); i++){
-				f.addEdge((float)f.getEdgeCount()+1.5f, from.get(i), to.get(i));
+			for(SysEdge edge : et){
+				f.addEdge(edge, edge.getFrom(), edge.getTo());
 			}
 		}else System.err.println("et==null || f==null");
 	}
 	
-	public static void removeEspecialEdges(DelegateForest<IElement, Object> f, EspecialEdgesTable<IElement, Object> et) {
+	public static void removeEspecialEdges(DelegateForest<IElement, SysEdge> f, EspecialEdgesTable et) {
 		
 		if(et != null) {
-			Vector<Object> edges = et.getEdge();
-			for(Object edge : edges) {
-				float modifiedEdge = (Float)edge + 0.5f;
-				f.removeEdge(modifiedEdge, false);
+			for(SysEdge edge : et) {
+				f.removeEdge(edge, false);
 			}
 		}
 	}
 
-	public static DelegateForest<IElement, Object> tree_to_forest(DelegateTree dt){
+	public static DelegateForest<IElement, SysEdge> tree_to_forest(DelegateTree dt){
 		if(dt==null)return null;
 		DelegateForest df = new DelegateForest();
 		for(Object v1 : dt.getVertices()){
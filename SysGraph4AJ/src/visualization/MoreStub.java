@@ -0,0 +1,54 @@
+package visualization;
+
+import java.util.Collections;
+import java.util.Set;
+
+import model.IElement;
+import model.SysMethod;
+
+/**
+ * A vertex of a call chain that stands for the callees and advice of a method that are not shown, because the
+ * method is deeper than the depth of the call chain or was not analysed yet. The call chain expands the method
+ * when the stub is double clicked.
+ */
+public class MoreStub implements IElement {
+
+	private final SysMethod method;
+	/**the number of elements not shown, -1 when the method was not analysed*/
+	private final int count;
+
+	public MoreStub(SysMethod method, int count) {
+		this.method = method;
+		this.count = count;
+	}
+
+	/**@return the method whose callees are not shown*/
+	public SysMethod getMethod() {
+		return method;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public IElement getOwner() {
+		return method;
+	}
+
+	public void setOwner(IElement e) {
+		throw new UnsupportedOperationException("the owner of a stub is its method");
+	}
+
+	public void addChild(IElement e) {
+		throw new UnsupportedOperationException("a stub has no children");
+	}
+
+	public Set<? extends IElement> getChildElements() {
+		return Collections.emptySet();
+	}
+
+	public String toString() {
+		return count < 0 ? "+? more" : "+" + count + " more";
+	}
+
+}
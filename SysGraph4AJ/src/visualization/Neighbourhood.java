@@ -0,0 +1,109 @@
+package visualization;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import analysis.ProjectAnalysis;
+import model.IElement;
+import model.SysAdvice;
+import model.SysMethod;
+import model.SysRoot;
+import edu.uci.ics.jung.graph.DirectedSparseMultigraph;
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * The neighbourhood of an element of the model: the elements at most k steps away from it, following the
+ * containment, calls, callers and advice in both directions, with the edges between them.
+ * <br>
+ * The model only knows the calls of a method, not its callers, so the callers of every method are indexed
+ * once, with {@link ProjectAnalysis#getCallers(List)}. A neighbourhood is then found with a breadth first search that
+ * stops at k steps, so it costs as much as the neighbourhood, not as the model. Build the index again when
+ * the model changes, e.g. after an analysis.
+ */
+public class Neighbourhood {
+
+	private final Map<SysMethod, List<SysMethod>> callers;
+
+	public Neighbourhood(SysRoot root) {
+		this.callers = ProjectAnalysis.getCallers(ProjectAnalysis.getAllMethods(root));
+	}
+
+	/**@return the methods that call the method, each once*/
+	public List<SysMethod> getCallers(SysMethod m) {
+		List<SysMethod> list = callers.get(m);
+		return list == null ? Collections.<SysMethod>emptyList() : list;
+	}
+
+	/**
+	 * @param hops the steps from the center, 0 for the center alone
+	 * @return the elements at most hops steps away from the center and the edges between them
+	 */
+	public Graph<IElement, SysEdge> around(IElement center, int hops) {
+		Set<IElement> found = Collections.newSetFromMap(new IdentityHashMap<IElement, Boolean>());
+		List<IElement> level = new ArrayList<IElement>();
+		found.add(center);
+		level.add(center);
+		for(int hop = 0; hop < hops && !level.isEmpty(); hop++) {
+			List<IElement> next = new ArrayList<IElement>();
+			for(IElement e : level) {
+				for(IElement n : neighbours(e)) {
+					if(found.add(n)) next.add(n);
+				}
+			}
+			level = next;
+		}
+
+		//every edge is found once, from its source
+		Graph<IElement, SysEdge> graph = new DirectedSparseMultigraph<IElement, SysEdge>();
+		for(IElement e : found) {
+			graph.addVertex(e);
+		}
+		for(IElement e : found) {
+			for(IElement child : children(e)) {
+				if(found.contains(child)) graph.addEdge(SysEdge.contains(e, child), e, child);
+			}
+			if(e instanceof SysMethod) {
+				//a method called from several places is still a single call edge
+				Set<SysMethod> calls = Collections.newSetFromMap(new IdentityHashMap<SysMethod, Boolean>());
+				for(SysMethod called : ((SysMethod) e).getCalls()) {
+					if(found.contains(called) && calls.add(called)) graph.addEdge(SysEdge.call(e, called), e, called);
+				}
+			}
+			if(e instanceof SysAdvice) {
+				for(SysMethod affected : ((SysAdvice) e).getAffecteds()) {
+					if(found.contains(affected)) graph.addEdge(SysEdge.advice(e, affected), e, affected);
+				}
+			}
+		}
+		return graph;
+	}
+
+	/**@return the elements one step away from e, in any direction*/
+	private List<IElement> neighbours(IElement e) {
+		List<IElement> neighbours = new ArrayList<IElement>();
+		if(e.getOwner() != null) neighbours.add(e.getOwner());
+		neighbours.addAll(children(e));
+		if(e instanceof SysMethod) {
+			SysMethod m = (SysMethod) e;
+			neighbours.addAll(m.getCalls());
+			neighbours.addAll(getCallers(m));
+			neighbours.addAll(m.getAffecters());
+		}
+		if(e instanceof SysAdvice) {
+			neighbours.addAll(((SysAdvice) e).getAffecteds());
+		}
+		return neighbours;
+	}
+
+	private static Collection<? extends IElement> children(IElement e) {
+		if(e instanceof SysRoot) return ((SysRoot) e).getPackages();
+		Collection<? extends IElement> children = e.getChildElements();
+		return children == null ? Collections.<IElement>emptySet() : children;
+	}
+
+}
@@ -0,0 +1,276 @@
+package visualization;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.collections15.Transformer;
+
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.algorithms.layout.StaticLayout;
+import edu.uci.ics.jung.graph.Forest;
+
+/**
+ * A tree layout of a forest computed on all the cores. The trees of a forest, and the subtrees of a tree, are
+ * independent, so they are laid out by separate tasks of a fork-join pool: a first pass computes the width of
+ * every subtree, a second pass places every subtree in the room its parent gives it. Each vertex is centered
+ * over its children as in {@link edu.uci.ics.jung.algorithms.layout.TreeLayout}.
+ * <br>
+ * The trees of the forest are then packed in rows, the tallest first, instead of being put in a single row,
+ * so a forest of many trees is about as wide as it is tall.
+ * <br>
+ * The forest is only read, so it must not change while it is laid out. Lay out a snapshot of a forest that
+ * is shown.
+ * <br>
+ * Interrupting the thread that asked for the layout, e.g. by cancelling its {@link gui.LayoutTask}, stops the
+ * tasks of the pool too, which check a flag at every vertex; the layout returned is then incomplete.
+ */
+public class ParallelTreeLayout {
+
+	/**subtrees deeper than this are laid out by the task of their ancestor, so tasks are not too small*/
+	private static final int SPLIT_DEPTH = 8;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	/**@return a layout of the forest, whose graph is the forest*/
+	public static <V, E> Layout<V, E> layout(Forest<V, E> forest, int distX, int distY) {
+		final Map<V, Point2D> positions = new ConcurrentHashMap<V, Point2D>();
+		Map<V, Integer> widths = new ConcurrentHashMap<V, Integer>();
+		//set when the caller is interrupted, the workers of the pool are not interrupted with it
+		AtomicBoolean stop = new AtomicBoolean();
+
+		//the width and the number of levels of every tree
+		final List<V> roots = new ArrayList<V>();
+		for(V v : forest.getVertices()) {
+			if(Thread.currentThread().isInterrupted()) {
+				return layout(forest, positions, new Dimension());
+			}
+			if(forest.getPredecessorCount(v) == 0) roots.add(v);
+		}
+		List<Width<V, E>> trees = new ArrayList<Width<V, E>>();
+		for(V root : roots) {
+			trees.add(new Width<V, E>(forest, root, 0, distX, widths, stop));
+		}
+		if(!run(trees, stop)) {
+			return layout(forest, positions, new Dimension());
+		}
+		final List<int[]> boxes = new ArrayList<int[]>();
+		for(Width<V, E> tree : trees) {
+			boxes.add(tree.join());
+		}
+
+		//the trees are put in rows about as wide as all of them are tall
+		List<Integer> order = new ArrayList<Integer>();
+		double area = 0;
+		int widest = 0;
+		for(int i = 0; i < roots.size(); i++) {
+			order.add(i);
+			area += (boxes.get(i)[0] + distX) * (double)(boxes.get(i)[1] * distY);
+			widest = Math.max(widest, boxes.get(i)[0] + distX);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return boxes.get(b)[1] - boxes.get(a)[1];
+			}
+		});
+		double rowWidth = Math.max(widest, Math.sqrt(area));
+		double left = distX, top = distY, rowHeight = 0, width = 0;
+		List<Place<V, E>> places = new ArrayList<Place<V, E>>();
+		for(int i : order) {
+			int[] box = boxes.get(i);
+			if(left > distX && left + box[0] > rowWidth) {
+				left = distX;
+				top += rowHeight;
+				rowHeight = 0;
+			}
+			places.add(new Place<V, E>(forest, roots.get(i), left + box[0] / 2.0, top, 0, distX, distY, widths, positions, stop));
+			width = Math.max(width, left + box[0]);
+			rowHeight = Math.max(rowHeight, box[1] * distY);
+			left += box[0] + distX;
+		}
+		run(places, stop);
+
+		return layout(forest, positions, new Dimension((int)width + distX, (int)(top + rowHeight)));
+	}
+
+	/**@return a layout with the positions computed, the vertices with none are at the origin*/
+	private static <V, E> Layout<V, E> layout(Forest<V, E> forest, final Map<V, Point2D> positions, Dimension size) {
+		return new StaticLayout<V, E>(forest, new Transformer<V, Point2D>() {
+			public Point2D transform(V v) {
+				Point2D p = positions.get(v);
+				return p == null ? new Point2D.Double() : new Point2D.Double(p.getX(), p.getY());
+			}
+		}, size);
+	}
+
+	/**
+	 * runs the tasks on the pool and waits for them; when the calling thread is interrupted meanwhile, the
+	 * tasks are told to stop and the thread stays interrupted
+	 * @return false if the tasks were stopped
+	 */
+	private static boolean run(Collection<? extends ForkJoinTask<?>> tasks, AtomicBoolean stop) {
+		//invoke would wait until the tasks are over and only then give back the interrupt
+		ForkJoinTask<Void> all = POOL.submit(new Together(tasks));
+		try {
+			all.get();
+			return true;
+		} catch(InterruptedException e) {
+			stop.set(true);
+			Thread.currentThread().interrupt();
+			return false;
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+			if(e.getCause() instanceof Error) throw (Error)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**runs tasks on the pool at once*/
+	private static class Together extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Collection<? extends ForkJoinTask<?>> tasks;
+
+		Together(Collection<? extends ForkJoinTask<?>> tasks) {
+			this.tasks = tasks;
+		}
+
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+
+	/**@return the width and the number of levels of the subtree of the vertex, a leaf is 0 wide; nothing useful once stopped*/
+	private static <V, E> int[] width(Forest<V, E> forest, V vertex, int distX, Map<V, Integer> widths, AtomicBoolean stop) {
+		int width = 0, levels = 0;
+		if(stop.get()) {
+			return new int[] {width, levels};
+		}
+		for(V child : forest.getChildren(vertex)) {
+			int[] box = width(forest, child, distX, widths, stop);
+			width += box[0] + distX;
+			levels = Math.max(levels, box[1]);
+		}
+		width = Math.max(0, width - distX);
+		widths.put(vertex, width);
+		return new int[] {width, levels + 1};
+	}
+
+	/**places the vertex at x, y and the subtree below it centered on x*/
+	private static <V, E> void place(Forest<V, E> forest, V vertex, double x, double y, int distX, int distY, Map<V, Integer> widths, Map<V, Point2D> positions, AtomicBoolean stop) {
+		if(stop.get()) {
+			return;
+		}
+		positions.put(vertex, new Point2D.Double(x, y));
+		double left = x - widths.get(vertex) / 2.0;
+		for(V child : forest.getChildren(vertex)) {
+			int width = widths.get(child);
+			place(forest, child, left + width / 2.0, y + distY, distX, distY, widths, positions, stop);
+			left += width + distX;
+		}
+	}
+
+	/**
+	 * The subtrees are only worth a task of their own near the roots and if there is more than one thread:
+	 * below that the subtree is computed by the task of its ancestor.
+	 */
+	private static boolean split(int depth, int children) {
+		return depth < SPLIT_DEPTH && children > 1 && POOL.getParallelism() > 1;
+	}
+
+	/**computes the width of the subtree of a vertex, as {@link ParallelTreeLayout#width}*/
+	private static class Width<V, E> extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+		private final Forest<V, E> forest;
+		private final V vertex;
+		private final int depth;
+		private final int distX;
+		private final Map<V, Integer> widths;
+		private final AtomicBoolean stop;
+
+		Width(Forest<V, E> forest, V vertex, int depth, int distX, Map<V, Integer> widths, AtomicBoolean stop) {
+			this.forest = forest;
+			this.vertex = vertex;
+			this.depth = depth;
+			this.distX = distX;
+			this.widths = widths;
+			this.stop = stop;
+		}
+
+		protected int[] compute() {
+			Collection<V> children = forest.getChildren(vertex);
+			if(stop.get() || !split(depth, children.size())) {
+				return width(forest, vertex, distX, widths, stop);
+			}
+			List<Width<V, E>> tasks = new ArrayList<Width<V, E>>(children.size());
+			for(V child : children) {
+				tasks.add(new Width<V, E>(forest, child, depth + 1, distX, widths, stop));
+			}
+			invokeAll(tasks);
+			int width = 0, levels = 0;
+			for(Width<V, E> task : tasks) {
+				int[] box = task.join();
+				width += box[0] + distX;
+				levels = Math.max(levels, box[1]);
+			}
+			width = Math.max(0, width - distX);
+			widths.put(vertex, width);
+			return new int[] {width, levels + 1};
+		}
+	}
+
+	/**places a vertex and the subtree below it, as {@link ParallelTreeLayout#place}*/
+	private static class Place<V, E> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Forest<V, E> forest;
+		private final V vertex;
+		private final double x, y;
+		private final int depth;
+		private final int distX, distY;
+		private final Map<V, Integer> widths;
+		private final Map<V, Point2D> positions;
+		private final AtomicBoolean stop;
+
+		Place(Forest<V, E> forest, V vertex, double x, double y, int depth, int distX, int distY, Map<V, Integer> widths, Map<V, Point2D> positions, AtomicBoolean stop) {
+			this.forest = forest;
+			this.vertex = vertex;
+			this.x = x;
+			this.y = y;
+			this.depth = depth;
+			this.distX = distX;
+			this.distY = distY;
+			this.widths = widths;
+			this.positions = positions;
+			this.stop = stop;
+		}
+
+		protected void compute() {
+			Collection<V> children = forest.getChildren(vertex);
+			if(stop.get() || !split(depth, children.size())) {
+				place(forest, vertex, x, y, distX, distY, widths, positions, stop);
+				return;
+			}
+			positions.put(vertex, new Point2D.Double(x, y));
+			double left = x - widths.get(vertex) / 2.0;
+			List<Place<V, E>> tasks = new ArrayList<Place<V, E>>(children.size());
+			for(V child : children) {
+				int width = widths.get(child);
+				tasks.add(new Place<V, E>(forest, child, left + width / 2.0, y + distY, depth + 1, distX, distY, widths, positions, stop));
+				left += width + distX;
+			}
+			invokeAll(tasks);
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package visualization;
+
+import model.IElement;
+
+/**
+ * An edge of the graphs of the model. Its kind tells how it is drawn: the edges of the tree of the model are
+ * solid, calls and advice are dashed and labelled, see {@link gui.SysTransformers}.
+ * <br>
+ * Edges are immutable and compared by identity, so two edges are never taken for one another, even between
+ * the same vertices.
+ */
+public class SysEdge {
+
+	public enum Kind {
+		/**from an element to an element it contains, e.g. a class to its methods or a method to its CFG*/
+		CONTAINS,
+		/**from a method to a method it calls*/
+		CALL,
+		/**between an advice and a method it affects*/
+		ADVICE,
+		/**between two nodes of a CFG, see {@link cfg.gui.CFGEdge}*/
+		CFG
+	}
+
+	private final Kind kind;
+	private final IElement from;
+	private final IElement to;
+
+	public SysEdge(Kind kind, IElement from, IElement to) {
+		this.kind = kind;
+		this.from = from;
+		this.to = to;
+	}
+
+	public static SysEdge contains(IElement owner, IElement element) {
+		return new SysEdge(Kind.CONTAINS, owner, element);
+	}
+
+	public static SysEdge call(IElement caller, IElement called) {
+		return new SysEdge(Kind.CALL, caller, called);
+	}
+
+	public static SysEdge advice(IElement from, IElement to) {
+		return new SysEdge(Kind.ADVICE, from, to);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public IElement getFrom() {
+		return from;
+	}
+
+	public IElement getTo() {
+		return to;
+	}
+
+	/**@return true for the calls and advice, the edges drawn over the tree of the model*/
+	public boolean isDependency() {
+		return kind == Kind.CALL || kind == Kind.ADVICE;
+	}
+
+	public String toString() {
+		return kind + ": " + from + " -> " + to;
+	}
+
+}
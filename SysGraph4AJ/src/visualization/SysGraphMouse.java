@@ -5,6 +5,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.AbstractAction;
 import javax.swing.JFrame;
@@ -19,11 +21,11 @@ import model.SysElement;
 import model.SysMethod;
 import model.SysPackage;
 import model.SysRoot;
+import analysis.AnalysisListener;
 import analysis.ClassAnalysis2;
 import analysis.MethodAnalysis;
 import analysis.SysAnalysis;
 import cfg.gui.CFGModelToGraph;
-import edu.uci.ics.jung.algorithms.layout.AggregateLayout;
 import edu.uci.ics.jung.algorithms.layout.GraphElementAccessor;
 import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
@@ -31,6 +33,8 @@ import edu.uci.ics.jung.visualization.control.DefaultModalGraphMouse;
 import gui.CallChainWindow;
 import gui.GUIWindowInterface;
 import gui.MainWindow;
+import gui.NeighbourhoodWindow;
+import gui.UpdateScheduler;
 
 /**
  * Classe responsável por tratar os eventos de click pelo mouse no grafo.
@@ -39,18 +43,18 @@ import gui.MainWindow;
  * @author robson
  *
  */
-public class SysGraphMouse extends DefaultModalGraphMouse<IElement, Object> {
+public class SysGraphMouse extends DefaultModalGraphMouse<IElement, SysEdge> {
 
 	private static final int CALLCHAIN_INDICATOR = 1;
 	private static final int MAINWINDOW_INDICATOR = 2;
-	private long lastTimeClicked=0l;
-	private long doubleClickTime = 400l;
 	private SysRoot root;
 	private GUIWindowInterface windowInterface;
 
 	public SysGraphMouse(GUIWindowInterface f, SysRoot r){
 		this.root = r;
 		this.windowInterface = f;
+		//the updates asked for from now on, also by analyses still running, show the graph of r
+		getScheduler();
 	}
 
 	/**
@@ -58,9 +62,9 @@ public class SysGraphMouse extends DefaultModalGraphMouse<IElement, Object> {
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes", "serial" })
 	private void rightClick(MouseEvent e) {
-		final VisualizationViewer<IElement,Object> visualizationViewer = (VisualizationViewer<IElement,Object>)e.getSource();
+		final VisualizationViewer<IElement, SysEdge> visualizationViewer = (VisualizationViewer<IElement, SysEdge>)e.getSource();
 		Point2D p = e.getPoint();
-		GraphElementAccessor<IElement,Object> pickSupport = visualizationViewer.getPickSupport();
+		GraphElementAccessor<IElement, SysEdge> pickSupport = visualizationViewer.getPickSupport();
 		if(pickSupport != null) {
 			final Layout l = visualizationViewer.getModel().getGraphLayout();
 			IElement vertex = (IElement) pickSupport.getVertex(l, p.getX(), p.getY());
@@ -89,6 +93,12 @@ public class SysGraphMouse extends DefaultModalGraphMouse<IElement, Object> {
 			} 
 
 			if(vertex instanceof SysElement && vertex != null){
+				popup.add(new AbstractAction("View Neighbourhood"){
+					public void actionPerformed(ActionEvent arg0) {
+						NeighbourhoodWindow w = new NeighbourhoodWindow((SysElement)el, (SysRoot) root);
+						w.setVisible(true);
+					}
+				});
 				popup.add(this.getViewPropertiesScreen((SysElement)el));
 			}
 			popup.show(visualizationViewer, e.getX(), e.getY());
@@ -127,81 +137,135 @@ public class SysGraphMouse extends DefaultModalGraphMouse<IElement, Object> {
 		};
 	}
 
-	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@SuppressWarnings("unchecked")
 	public void mouseClicked(MouseEvent e) {
-		long clickedNow = System.currentTimeMillis();
 		if(e.getButton()==MouseEvent.BUTTON3 && windowInterface.rightClickEnabled()) {
 			this.rightClick(e);
 			return;
 		} 
 
-		if(clickedNow - this.lastTimeClicked <= this.doubleClickTime) {
-			this.lastTimeClicked = clickedNow;
-			VisualizationViewer<IElement,Object> visualizationViewer = (VisualizationViewer<IElement,Object>) e.getSource();
+		if(e.getClickCount() == 2) {
+			VisualizationViewer<IElement, SysEdge> visualizationViewer = (VisualizationViewer<IElement, SysEdge>) e.getSource();
 			Point2D p = e.getPoint();
-			GraphElementAccessor<IElement,Object> pickSupport = visualizationViewer.getPickSupport();
+			GraphElementAccessor<IElement, SysEdge> pickSupport = visualizationViewer.getPickSupport();
 			if(pickSupport != null) {
-				SysElement vertex = (SysElement)pickSupport.getVertex(visualizationViewer.getModel().getGraphLayout(), p.getX(), p.getY());
-				boolean isWorkingOnVisualizationViewer = false;
-				long t1 = System.nanoTime();
+				IElement picked = pickSupport.getVertex(visualizationViewer.getModel().getGraphLayout(), p.getX(), p.getY());
+				if(this.windowInterface instanceof CallChainWindow && (picked instanceof MoreStub || picked instanceof SysMethod)) {
+					//the call chain shows the callees of the method, analysing only that method
+					SysMethod method = picked instanceof MoreStub ? ((MoreStub)picked).getMethod() : (SysMethod)picked;
+					((CallChainWindow)this.windowInterface).expand(method);
+					return;
+				}
+				if(!(picked instanceof SysElement) || !needsAnalysis((SysElement)picked)) return;
+				final SysElement vertex = (SysElement)picked;
 				this.windowInterface.getTextArea().append("analysing "+vertex.getFullyQualifiedName()+"\n");
-				if(vertex instanceof SysPackage && !((SysPackage) vertex).isAnalysed()) {
-					String fullPath = File.separatorChar + ((SysPackage)vertex).getFullyQualifiedName();
-					fullPath = fullPath.replace(".", File.separator);
-					fullPath = ((SysRoot)this.root).getPath() + fullPath;
+				final String fullPath;
+				if(vertex instanceof SysPackage) {
+					String path = File.separatorChar + ((SysPackage)vertex).getFullyQualifiedName();
+					path = path.replace(".", File.separator);
+					fullPath = ((SysRoot)this.root).getPath() + path;
 					if(fullPath.contains(File.separator + File.separator)) {
 						JOptionPane.showMessageDialog(null, "filePath has two File.separator.");
 					}	
-					SysAnalysis.analysePackage((SysPackage)vertex, fullPath, true);
-//					((SysPackage)vertex).setIsAnalysed(true);// this is not necessary, because this state is changed inside last method
-					isWorkingOnVisualizationViewer = true;
-				} else if(vertex instanceof SysClass && !((SysClass) vertex).isAnalysed()){
-					// verificar adição do método $jacoco
-					SysClass c = ((SysClass)vertex);
-					c = ClassAnalysis2.analyseClass(c, (SysRoot) this.root);
-					c.setIsAnalysed(true);
-					isWorkingOnVisualizationViewer = true;
 				} else {
-					if(vertex instanceof SysMethod && !((SysMethod)vertex).isAnalysed()){
-						SysMethod m = ((SysMethod)vertex);
-						MethodAnalysis.analyseMethod(m, (SysRoot) this.root);
-						m.setIsAnalysed(true);
-						isWorkingOnVisualizationViewer = true;
-					}
+					fullPath = null;
 				}
-				
-				long t2 = System.nanoTime();
-				if(isWorkingOnVisualizationViewer) {
-					this.windowInterface.getTextArea().append("Took " + (t2-t1)/1000000.0d+ "ms to analyse " + vertex.getName() + "\n");
-					Component c = this.windowInterface.getContentPane();
-					int indicator = MAINWINDOW_INDICATOR;
-					while(!(c instanceof JFrame)){
-						c = c.getParent();
-						if(c instanceof CallChainWindow){
-							indicator = CALLCHAIN_INDICATOR;
-							break;
-						} else if (c instanceof MainWindow){
-							indicator = MAINWINDOW_INDICATOR;
-							break;
-						}
+				/*the analysis runs in background, with the others asked for meanwhile; the graph is reloaded once for all of them*/
+				getScheduler().requestAnalysis(vertex, "analysing " + vertex.getFullyQualifiedName(), new UpdateScheduler.Analysis() {
+					public boolean analyse(AnalysisListener listener) {
+						return SysGraphMouse.this.analyse(vertex, fullPath, listener);
 					}
-					if(indicator == CALLCHAIN_INDICATOR) { // que tipo de componente é esse?
-						CallChainM2G cc = new CallChainM2G();
-						AggregateLayout al = cc.doAggregateLayout((SysRoot) root,((CallChainWindow)c).getM());
-						VisualizationViewer<IElement, Object> vv_callchain = cc.makeVV(al);
-						this.windowInterface.setCenterPanel(vv_callchain);
-						this.windowInterface.makeGoodVisual(vv_callchain);
-
-					} else {
-						CFGModelToGraph.reloadMainGraphWithCFGInformations(this.root, this.windowInterface, vertex);
-					}
-				}
+				});
 			}
 		}
 		else {
-			this.lastTimeClicked = clickedNow;
 			super.mouseClicked(e);
 		}
 	}
 
+	/**@return the scheduler of the window, which reloads it with {@link #reload(List)} of this mouse, and so of its root*/
+	private UpdateScheduler getScheduler() {
+		return UpdateScheduler.of(this.windowInterface, new UpdateScheduler.Updater() {
+			public void update(List<IElement> changed) {
+				reload(changed);
+			}
+		});
+	}
+
+	private static boolean needsAnalysis(SysElement vertex) {
+		if(vertex instanceof SysPackage) return !((SysPackage) vertex).isAnalysed();
+		if(vertex instanceof SysClass) return !((SysClass) vertex).isAnalysed();
+		if(vertex instanceof SysMethod) return !((SysMethod) vertex).isAnalysed();
+		return false;
+	}
+
+	/**
+	 * Analyses the given package, class or method. Called on the analysis thread.
+	 * @param listener told about the classes and packages found in a package, as they are found
+	 * @return true if the element was analysed, false if it had already been
+	 */
+	private boolean analyse(SysElement vertex, String fullPath, AnalysisListener listener) {
+		if(!needsAnalysis(vertex)) return false;
+		if(vertex instanceof SysPackage) {
+			SysAnalysis.analysePackage((SysPackage)vertex, fullPath, true, listener);
+//			((SysPackage)vertex).setIsAnalysed(true);// this is not necessary, because this state is changed inside last method
+		} else if(vertex instanceof SysClass){
+			// verificar adição do método $jacoco
+			SysClass c = ((SysClass)vertex);
+			c = ClassAnalysis2.analyseClass(c, (SysRoot) this.root);
+			c.setIsAnalysed(true);
+		} else {
+			SysMethod m = ((SysMethod)vertex);
+			MethodAnalysis.analyseMethod(m, (SysRoot) this.root);
+			m.setIsAnalysed(true);
+		}
+		return true;
+	}
+
+	/**shows the analysed elements in the window, a call chain or the main graph. Called on the event dispatch thread.*/
+	private void reload(List<IElement> changed) {
+		if(this.windowInterface instanceof NeighbourhoodWindow) {
+			((NeighbourhoodWindow)this.windowInterface).reload();
+			return;
+		}
+		Component c = this.windowInterface.getContentPane();
+		int indicator = MAINWINDOW_INDICATOR;
+		while(!(c instanceof JFrame)){
+			c = c.getParent();
+			if(c instanceof CallChainWindow){
+				indicator = CALLCHAIN_INDICATOR;
+				break;
+			} else if (c instanceof MainWindow){
+				indicator = MAINWINDOW_INDICATOR;
+				break;
+			}
+		}
+		if(indicator == CALLCHAIN_INDICATOR) { // que tipo de componente é esse?
+			((CallChainWindow)c).reload();
+		} else {
+			//the main window may show another project since the analyses were asked for
+			SysRoot shown = this.windowInterface instanceof MainWindow ? ((MainWindow)this.windowInterface).getSysRoot() : this.root;
+			List<IElement> inShown = new ArrayList<IElement>();
+			for(IElement e : changed) {
+				if(isIn(shown, e)) inShown.add(e);
+			}
+			if(!inShown.isEmpty()) {
+				CFGModelToGraph.reloadMainGraphWithCFGInformations(shown, this.windowInterface, inShown);
+			}
+		}
+	}
+
+	/**@return true if the element is in the model of root, and not in the model of a project shown before*/
+	private static boolean isIn(SysRoot root, IElement e) {
+		IElement top = e;
+		while(top.getOwner() != null) {
+			top = top.getOwner();
+		}
+		if(top == root) return true;
+		for(SysPackage p : root.getPackages()) {
+			if(p == top) return true;
+		}
+		return false;
+	}
+
 }